@@ -0,0 +1,115 @@
+package com.codingwithmitch.foodrecipes.persistence;
+
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.lang.reflect.Type;
+import java.util.Random;
+
+import static com.codingwithmitch.foodrecipes.util.Constants.RECIPES_PER_PAGE;
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Times Converters against the Gson and TypeToken it used to build for every value, encoding and
+ * decoding pages of recipes with 10 to 40 ingredients each. The time per page is logged under the
+ * ConvertersBenchmark tag.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class ConvertersBenchmark {
+
+    private static final String TAG = "ConvertersBenchmark";
+
+    private static final int PAGES = 200;
+    private static final int WARM_UP_PAGES = 50;
+
+    @Test
+    public void encodeAndDecode(){
+        String[][][] pages = buildPages(new Random(42));
+        String[][] json = new String[pages.length][RECIPES_PER_PAGE];
+
+        // both run over some pages first so the jit has compiled them
+        for(int page = 0; page < WARM_UP_PAGES; page++){
+            for(int i = 0; i < RECIPES_PER_PAGE; i++){
+                oldFromString(oldFromArrayList(pages[page][i]));
+                Converters.fromString(Converters.fromArrayList(pages[page][i]));
+            }
+        }
+
+        long start = System.nanoTime();
+        for(int page = 0; page < pages.length; page++){
+            for(int i = 0; i < RECIPES_PER_PAGE; i++){
+                json[page][i] = oldFromArrayList(pages[page][i]);
+            }
+        }
+        long oldEncode = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for(int page = 0; page < pages.length; page++){
+            for(int i = 0; i < RECIPES_PER_PAGE; i++){
+                oldFromString(json[page][i]);
+            }
+        }
+        long oldDecode = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for(int page = 0; page < pages.length; page++){
+            for(int i = 0; i < RECIPES_PER_PAGE; i++){
+                json[page][i] = Converters.fromArrayList(pages[page][i]);
+            }
+        }
+        long encode = System.nanoTime() - start;
+
+        String[][][] decoded = new String[pages.length][RECIPES_PER_PAGE][];
+        start = System.nanoTime();
+        for(int page = 0; page < pages.length; page++){
+            for(int i = 0; i < RECIPES_PER_PAGE; i++){
+                decoded[page][i] = Converters.fromString(json[page][i]);
+            }
+        }
+        long decode = System.nanoTime() - start;
+
+        for(int page = 0; page < pages.length; page++){
+            assertArrayEquals(pages[page], decoded[page]);
+        }
+        Log.i(TAG, "per page of " + RECIPES_PER_PAGE + " recipes, " +
+                "encode " + micros(encode) + "us (was " + micros(oldEncode) + "us), " +
+                "decode " + micros(decode) + "us (was " + micros(oldDecode) + "us)");
+    }
+
+    private static long micros(long totalNanos){
+        return totalNanos / PAGES / 1000;
+    }
+
+    private static String[][][] buildPages(Random random){
+        String[][][] pages = new String[PAGES][RECIPES_PER_PAGE][];
+        for(int page = 0; page < PAGES; page++){
+            for(int i = 0; i < RECIPES_PER_PAGE; i++){
+                String[] ingredients = new String[10 + random.nextInt(31)];
+                for(int j = 0; j < ingredients.length; j++){
+                    ingredients[j] = (1 + random.nextInt(4)) + " cups of ingredient number " + random.nextInt(1000);
+                }
+                pages[page][i] = ingredients;
+            }
+        }
+        return pages;
+    }
+
+    // what Converters did before
+    private static String[] oldFromString(String value){
+        Type listType = new TypeToken<String[]>(){}.getType();
+        return new Gson().fromJson(value, listType);
+    }
+
+    private static String oldFromArrayList(String[] list){
+        Gson gson = new Gson();
+        return gson.toJson(list);
+    }
+}
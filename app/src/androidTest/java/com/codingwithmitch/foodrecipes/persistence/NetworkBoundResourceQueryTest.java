@@ -0,0 +1,207 @@
+package com.codingwithmitch.foodrecipes.persistence;
+
+import android.arch.lifecycle.LiveData;
+import android.arch.lifecycle.MutableLiveData;
+import android.arch.lifecycle.Observer;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.MediumTest;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.codingwithmitch.foodrecipes.AppExecutors;
+import com.codingwithmitch.foodrecipes.models.Recipe;
+import com.codingwithmitch.foodrecipes.models.RecipeWithIngredients;
+import com.codingwithmitch.foodrecipes.requests.responses.ApiResponse;
+import com.codingwithmitch.foodrecipes.requests.responses.RecipeResponse;
+import com.codingwithmitch.foodrecipes.util.CacheWriteResult;
+import com.codingwithmitch.foodrecipes.util.FetchPolicy;
+import com.codingwithmitch.foodrecipes.util.NetworkBoundResource;
+import com.codingwithmitch.foodrecipes.util.Resource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Protocol;
+import okhttp3.Request;
+import retrofit2.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts the queries a NetworkBoundResource runs on the database to show a recipe fetched from the api:
+ * one to load it, and one more only if the save changed it.
+ */
+@MediumTest
+@RunWith(AndroidJUnit4.class)
+public class NetworkBoundResourceQueryTest {
+
+    private static final String RECIPE_ID = "r1";
+
+    private RecipeDatabase database;
+    private RecipeDao recipeDao;
+
+    private final AtomicInteger queryCount = new AtomicInteger();
+    private int loadCount;
+
+    @Before
+    public void setUp(){
+        database = RecipeDatabase.createForTesting(InstrumentationRegistry.getTargetContext(), null);
+        recipeDao = database.getRecipeDao();
+    }
+
+    @After
+    public void tearDown(){
+        database.close();
+    }
+
+    @Test
+    public void readsANewRecipeOnceMore() throws InterruptedException {
+        List<Resource<Recipe>> resources = fetch(buildRecipe("Chicken soup"));
+
+        Resource<Recipe> last = resources.get(resources.size() - 1);
+        assertEquals(Resource.Status.SUCCESS, last.status);
+        assertNotNull(last.data);
+        assertEquals("Chicken soup", last.data.getTitle());
+        assertTrue(last.data.getTimestamp() > 0);
+        assertEquals(1, loadCount);
+        // nothing cached, then what was saved
+        assertEquals(2, queryCount.get());
+    }
+
+    @Test
+    public void doesNotReadAnUnchangedRecipeAgain() throws InterruptedException {
+        recipeDao.insertRecipeWithIngredients(buildRecipe("Chicken soup"));
+
+        List<Resource<Recipe>> resources = fetch(buildRecipe("Chicken soup"));
+
+        Resource<Recipe> last = resources.get(resources.size() - 1);
+        assertEquals(Resource.Status.SUCCESS, last.status);
+        assertNotNull(last.data);
+        assertEquals("Chicken soup", last.data.getTitle());
+        assertEquals(1, loadCount);
+        assertEquals(1, queryCount.get());
+    }
+
+    @Test
+    public void readsAChangedRecipeOnceMore() throws InterruptedException {
+        recipeDao.insertRecipeWithIngredients(buildRecipe("Chicken soup"));
+
+        List<Resource<Recipe>> resources = fetch(buildRecipe("Chicken noodle soup"));
+
+        Resource<Recipe> last = resources.get(resources.size() - 1);
+        assertEquals(Resource.Status.SUCCESS, last.status);
+        assertNotNull(last.data);
+        assertEquals("Chicken noodle soup", last.data.getTitle());
+        assertEquals(1, loadCount);
+        assertEquals(2, queryCount.get());
+    }
+
+    // runs a resource that always fetches the recipe, until it succeeds or fails
+    private List<Resource<Recipe>> fetch(final Recipe fetched) throws InterruptedException {
+        final List<Resource<Recipe>> resources = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        final Observer<Resource<Recipe>> observer = new Observer<Resource<Recipe>>() {
+            @Override
+            public void onChanged(@Nullable Resource<Recipe> resource) {
+                resources.add(resource);
+                if(resource != null && resource.status != Resource.Status.LOADING){
+                    done.countDown();
+                }
+            }
+        };
+
+        @SuppressWarnings("unchecked")
+        final LiveData<Resource<Recipe>>[] results = new LiveData[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                results[0] = new RecipeResource(fetched).getAsLiveData();
+                results[0].observeForever(observer);
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                results[0].removeObserver(observer);
+            }
+        });
+        return resources;
+    }
+
+    private class RecipeResource extends NetworkBoundResource<Recipe, RecipeResponse> {
+
+        private final Recipe fetched;
+
+        RecipeResource(Recipe fetched) {
+            super(FetchPolicy.networkFirst(FetchPolicy.FOREVER));
+            this.fetched = fetched;
+        }
+
+        @Override
+        protected CacheWriteResult saveCallResult(@NonNull RecipeResponse item, long fetchedAt) {
+            item.getRecipe().setTimestamp((int) (fetchedAt / 1000));
+            return recipeDao.insertRecipeWithIngredients(item.getRecipe());
+        }
+
+        @Override
+        protected long getFetchedAt(@NonNull Recipe data) {
+            return data.getTimestamp() * 1000L;
+        }
+
+        // what RecipeDao.getRecipe returns, counting the queries
+        @NonNull
+        @Override
+        protected LiveData<Recipe> loadFromDb() {
+            loadCount++;
+            return new ScopedQueryLiveData<Recipe>(RecipeInvalidationTracker.getInstance(),
+                    AppExecutors.getInstance().diskRead()) {
+                @Override
+                protected Recipe compute() {
+                    queryCount.incrementAndGet();
+                    RecipeWithIngredients recipe = recipeDao.getRecipeWithIngredients(RECIPE_ID);
+                    return recipe != null ? recipe.toRecipe() : null;
+                }
+
+                @Override
+                protected boolean isAffectedBy(@Nullable Set<String> recipeIds, @NonNull Set<String> queries) {
+                    return recipeIds == null || recipeIds.contains(RECIPE_ID);
+                }
+            };
+        }
+
+        @NonNull
+        @Override
+        protected LiveData<ApiResponse<RecipeResponse>> createCall() {
+            okhttp3.Response raw = new okhttp3.Response.Builder()
+                    .request(new Request.Builder().url("https://www.food2fork.com/api/get?rId=" + RECIPE_ID).build())
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .sentRequestAtMillis(System.currentTimeMillis())
+                    .receivedResponseAtMillis(System.currentTimeMillis())
+                    .build();
+            MutableLiveData<ApiResponse<RecipeResponse>> response = new MutableLiveData<>();
+            response.setValue(new ApiResponse<RecipeResponse>().create(
+                    Response.success(new RecipeResponse(fetched, null), raw)));
+            return response;
+        }
+    }
+
+    private static Recipe buildRecipe(String title){
+        return new Recipe(RECIPE_ID, title, "publisher", "http://static.food2fork.com/r1.jpg", 99.5f,
+                new String[]{"1 chicken", "2 cups of water", "salt"}, 0);
+    }
+}
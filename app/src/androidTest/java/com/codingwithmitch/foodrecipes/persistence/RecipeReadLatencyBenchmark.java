@@ -0,0 +1,201 @@
+package com.codingwithmitch.foodrecipes.persistence;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.codingwithmitch.foodrecipes.models.Recipe;
+import com.codingwithmitch.foodrecipes.models.RecipeWithIngredients;
+import com.codingwithmitch.foodrecipes.requests.responses.RecipeStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.codingwithmitch.foodrecipes.util.Constants.DATABASE_READER_THREADS;
+import static com.codingwithmitch.foodrecipes.util.Constants.RECIPES_PER_PAGE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reads recipes from DATABASE_READER_THREADS threads, first on their own and then while another thread
+ * keeps saving search pages, as saveCallResult does. The read latency percentiles of both runs are logged
+ * under the RecipeReadLatencyBenchmark tag.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class RecipeReadLatencyBenchmark {
+
+    private static final String TAG = "RecipeReadLatencyBench";
+
+    private static final String DATABASE_NAME = "recipe_read_latency_benchmark_db";
+
+    private static final String QUERY = "chicken";
+    private static final int PAGES = 10;
+    private static final int INGREDIENTS_PER_RECIPE = 20;
+    private static final long RUN_MILLIS = 5000;
+
+    private RecipeDatabase database;
+    private RecipeDao recipeDao;
+
+    @Before
+    public void setUp(){
+        database = RecipeDatabase.createForTesting(InstrumentationRegistry.getTargetContext(), DATABASE_NAME);
+        recipeDao = database.getRecipeDao();
+        for(int page = 1; page <= PAGES; page++){
+            for(Recipe recipe: buildPage(page, 0)){
+                recipeDao.insertRecipeWithIngredients(recipe);
+            }
+        }
+    }
+
+    @After
+    public void tearDown(){
+        database.close();
+        InstrumentationRegistry.getTargetContext().deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void readLatencyDuringPageWrites() throws InterruptedException {
+        long[] idle = readFor(RUN_MILLIS, false);
+        long[] writing = readFor(RUN_MILLIS, true);
+        Log.i(TAG, "reads only:        " + describe(idle));
+        Log.i(TAG, "reads with writes: " + describe(writing));
+    }
+
+    /**
+     * @return the latency of every read, sorted
+     */
+    private long[] readFor(long millis, boolean withWrites) throws InterruptedException {
+        final AtomicBoolean isRunning = new AtomicBoolean(true);
+        final AtomicInteger pagesWritten = new AtomicInteger();
+        final CountDownLatch finished = new CountDownLatch(DATABASE_READER_THREADS + (withWrites ? 1 : 0));
+
+        List<Reader> readers = new ArrayList<>(DATABASE_READER_THREADS);
+        for(int i = 0; i < DATABASE_READER_THREADS; i++){
+            Reader reader = new Reader(new Random(i), isRunning, finished);
+            readers.add(reader);
+            new Thread(reader, "benchmark-reader-" + i).start();
+        }
+
+        if(withWrites){
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        int version = 1;
+                        while(isRunning.get()){
+                            // a new social rank every time so each save changes every row
+                            for(int page = 1; page <= PAGES && isRunning.get(); page++){
+                                recipeDao.upsertSearchPage(QUERY, page, new RecipeStream(buildPage(page, version)),
+                                        System.currentTimeMillis());
+                                pagesWritten.incrementAndGet();
+                            }
+                            version++;
+                        }
+                    } finally {
+                        finished.countDown();
+                    }
+                }
+            }, "benchmark-writer").start();
+        }
+
+        Thread.sleep(millis);
+        isRunning.set(false);
+        finished.await();
+        if(withWrites){
+            assertTrue(pagesWritten.get() > 0);
+            Log.i(TAG, pagesWritten.get() + " pages written in " + millis + "ms");
+        }
+
+        int total = 0;
+        for(Reader reader: readers){
+            assertEquals(0, reader.misses);
+            total += reader.reads;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for(Reader reader: readers){
+            System.arraycopy(reader.latencies, 0, all, offset, reader.reads);
+            offset += reader.reads;
+        }
+        Arrays.sort(all);
+        return all;
+    }
+
+    // reads random recipes until it's stopped, the fields are read once it counted down
+    private class Reader implements Runnable {
+
+        private final Random random;
+        private final AtomicBoolean isRunning;
+        private final CountDownLatch finished;
+
+        private final long[] latencies = new long[1 << 20];
+        private int reads;
+        private int misses;
+
+        Reader(Random random, AtomicBoolean isRunning, CountDownLatch finished) {
+            this.random = random;
+            this.isRunning = isRunning;
+            this.finished = finished;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while(isRunning.get() && reads < latencies.length){
+                    String recipeId = recipeId(1 + random.nextInt(PAGES), random.nextInt(RECIPES_PER_PAGE));
+                    long start = System.nanoTime();
+                    RecipeWithIngredients recipe = recipeDao.getRecipeWithIngredients(recipeId);
+                    latencies[reads++] = System.nanoTime() - start;
+                    if(recipe == null){
+                        misses++;
+                    }
+                }
+            } finally {
+                finished.countDown();
+            }
+        }
+    }
+
+    private static String describe(long[] sorted){
+        return sorted.length + " reads, p50 " + percentileMicros(sorted, 0.5) +
+                "us, p90 " + percentileMicros(sorted, 0.9) +
+                "us, p99 " + percentileMicros(sorted, 0.99) +
+                "us, max " + sorted[sorted.length - 1] / 1000 + "us";
+    }
+
+    // nearest rank, as LatencyTracker does
+    private static long percentileMicros(long[] sorted, double percentile){
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return sorted[Math.max(rank - 1, 0)] / 1000;
+    }
+
+    private static List<Recipe> buildPage(int page, int version){
+        List<Recipe> recipes = new ArrayList<>(RECIPES_PER_PAGE);
+        for(int i = 0; i < RECIPES_PER_PAGE; i++){
+            String[] ingredients = new String[INGREDIENTS_PER_RECIPE];
+            for(int j = 0; j < ingredients.length; j++){
+                ingredients[j] = (j + 1) + " cups of ingredient " + j;
+            }
+            recipes.add(new Recipe(recipeId(page, i), QUERY + " recipe " + page + "-" + i, "publisher",
+                    "http://static.food2fork.com/" + page + "-" + i + ".jpg",
+                    100 - i - version % 50, ingredients, 0));
+        }
+        return recipes;
+    }
+
+    private static String recipeId(int page, int position){
+        return "r" + page + "-" + position;
+    }
+}
@@ -0,0 +1,145 @@
+package com.codingwithmitch.foodrecipes.persistence;
+
+import android.arch.persistence.db.SimpleSQLiteQuery;
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteStatement;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.codingwithmitch.foodrecipes.util.Constants.RECIPES_PER_PAGE;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the recipes_fts search of RecipeDao.searchRecipes with the LIKE '%q%' query it replaced,
+ * on 10k and 100k cached recipes. The median time of a first page is logged under the RecipeSearchBenchmark tag.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class RecipeSearchBenchmark {
+
+    private static final String TAG = "RecipeSearchBenchmark";
+
+    private static final String DATABASE_NAME = "recipe_search_benchmark_db";
+
+    private static final int WARM_UP_RUNS = 3;
+    private static final int RUNS = 15;
+    private static final int INGREDIENTS_PER_RECIPE = 10;
+
+    private static final String[] WORDS = {"chicken", "beef", "pork", "soup", "salad", "pasta", "rice", "garlic",
+            "onion", "tomato", "lemon", "butter", "cheese", "potato", "carrot", "pepper", "basil", "ginger",
+            "honey", "bacon", "mushroom", "spinach", "coconut", "curry", "chocolate", "vanilla", "almond",
+            "cinnamon", "salmon", "shrimp", "tofu", "lentil", "bean", "corn", "apple", "pear", "mango"};
+
+    // the query in RecipeDao.searchRecipes for "chick"
+    private static final String FTS_QUERY = "SELECT recipes.recipe_id, recipes.title, recipes.social_rank FROM recipes " +
+            "JOIN recipes_fts ON recipes.rowid = recipes_fts.docid WHERE recipes_fts MATCH 'chick*' " +
+            "ORDER BY recipes.social_rank DESC, recipes.recipe_id ASC LIMIT " + RECIPES_PER_PAGE;
+
+    // the query searchRecipes ran before recipes_fts, over the ingredients table instead of the json column
+    private static final String LIKE_QUERY = "SELECT recipes.recipe_id, recipes.title, recipes.social_rank FROM recipes " +
+            "WHERE recipes.title LIKE '%chick%' OR EXISTS (SELECT 1 FROM recipe_ingredients " +
+            "WHERE recipe_ingredients.recipe_id = recipes.recipe_id AND recipe_ingredients.ingredient LIKE '%chick%') " +
+            "ORDER BY recipes.social_rank DESC, recipes.recipe_id ASC LIMIT " + RECIPES_PER_PAGE;
+
+    private RecipeDatabase database;
+
+    @After
+    public void tearDown(){
+        if(database != null){
+            database.close();
+            InstrumentationRegistry.getTargetContext().deleteDatabase(DATABASE_NAME);
+        }
+    }
+
+    @Test
+    public void search10kRecipes(){
+        benchmark(10000);
+    }
+
+    @Test
+    public void search100kRecipes(){
+        benchmark(100000);
+    }
+
+    private void benchmark(int recipeCount){
+        database = RecipeDatabase.createForTesting(InstrumentationRegistry.getTargetContext(), DATABASE_NAME);
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        insertRecipes(db, recipeCount);
+
+        double fts = medianMillis(db, FTS_QUERY);
+        double like = medianMillis(db, LIKE_QUERY);
+        Log.i(TAG, recipeCount + " recipes: fts " + fts + "ms, like " + like + "ms, median of " + RUNS);
+    }
+
+    private static double medianMillis(SupportSQLiteDatabase db, String sql){
+        for(int i = 0; i < WARM_UP_RUNS; i++){
+            assertTrue(sql, runQuery(db, sql) > 0);
+        }
+        long[] times = new long[RUNS];
+        for(int i = 0; i < RUNS; i++){
+            long start = System.nanoTime();
+            runQuery(db, sql);
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[RUNS / 2] / 1e6;
+    }
+
+    private static int runQuery(SupportSQLiteDatabase db, String sql){
+        Cursor cursor = db.query(new SimpleSQLiteQuery(sql));
+        try {
+            int rows = 0;
+            while(cursor.moveToNext()){
+                cursor.getString(1);
+                rows++;
+            }
+            return rows;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // the recipes_fts triggers index every row as it's inserted, as they do for RecipeDao's writes
+    private static void insertRecipes(SupportSQLiteDatabase db, int recipeCount){
+        Random random = new Random(42);
+        SupportSQLiteStatement insertRecipe = db.compileStatement("INSERT INTO recipes " +
+                "(recipe_id, title, publisher, image_url, social_rank, timestamp, content_hash) VALUES (?, ?, ?, ?, ?, 0, 0)");
+        SupportSQLiteStatement insertIngredient = db.compileStatement(
+                "INSERT INTO recipe_ingredients (recipe_id, position, ingredient) VALUES (?, ?, ?)");
+        db.beginTransaction();
+        try {
+            for(int i = 0; i < recipeCount; i++){
+                String recipeId = "r" + i;
+                insertRecipe.bindString(1, recipeId);
+                insertRecipe.bindString(2, word(random) + " " + word(random) + " " + word(random));
+                insertRecipe.bindString(3, "publisher " + random.nextInt(50));
+                insertRecipe.bindString(4, "http://static.food2fork.com/" + recipeId + ".jpg");
+                insertRecipe.bindDouble(5, (float) (random.nextDouble() * 100));
+                insertRecipe.executeInsert();
+                for(int position = 0; position < INGREDIENTS_PER_RECIPE; position++){
+                    insertIngredient.bindString(1, recipeId);
+                    insertIngredient.bindLong(2, position);
+                    insertIngredient.bindString(3, (1 + random.nextInt(4)) + " cups " + word(random) + " " + word(random));
+                    insertIngredient.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static String word(Random random){
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+}
@@ -0,0 +1,215 @@
+package com.codingwithmitch.foodrecipes.requests;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.codingwithmitch.foodrecipes.models.Recipe;
+import com.codingwithmitch.foodrecipes.persistence.RecipeDao;
+import com.codingwithmitch.foodrecipes.persistence.RecipeDatabase;
+import com.codingwithmitch.foodrecipes.requests.responses.RecipeSearchResponse;
+import com.codingwithmitch.foodrecipes.requests.responses.RecipeStream;
+import com.codingwithmitch.foodrecipes.util.JsonAdapters;
+import com.google.gson.Gson;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures how far the heap grows while a search page is parsed and saved: the old way, parsing the
+ * whole response into a list and copying it into an array before saving it, and streaming it with
+ * RecipeSearchResponseConverterFactory into RecipeDao.upsertSearchPage.
+ * The median peak of a few runs is logged under the SearchMemoryBenchmark tag, for a regular page
+ * and for a large one where the difference stands out from the noise, along with the median time each
+ * save took. The body is already in memory, so that's the parsing and the write transactions without
+ * the network.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class SearchResponseMemoryBenchmark {
+
+    private static final String TAG = "SearchMemoryBenchmark";
+
+    private static final MediaType JSON = MediaType.parse("application/json");
+    private static final int RUNS = 5;
+    private static final int INGREDIENTS_PER_RECIPE = 20;
+
+    private RecipeDatabase database;
+    private RecipeDao recipeDao;
+    private Gson gson;
+
+    @Before
+    public void setUp(){
+        database = RecipeDatabase.createForTesting(InstrumentationRegistry.getTargetContext(), null);
+        recipeDao = database.getRecipeDao();
+        gson = JsonAdapters.getGson();
+    }
+
+    @After
+    public void tearDown(){
+        database.close();
+    }
+
+    @Test
+    public void peakMemoryOfAPage() throws Exception {
+        measure(30);
+    }
+
+    @Test
+    public void peakMemoryOfALargePage() throws Exception {
+        measure(1000);
+    }
+
+    private void measure(int recipeCount) throws Exception {
+        final byte[] body = buildBody(recipeCount).getBytes("UTF-8");
+
+        // saved once first, so every measured save finds the same rows already there
+        RecipeSearchResponse first = convert(ResponseBody.create(JSON, body));
+        recipeDao.upsertSearchPage("chicken", 1, first.getRecipeStream(), System.currentTimeMillis());
+        first.close();
+        assertEquals(recipeCount, recipeDao.countRecipes());
+
+        Runnable parse = new Runnable() {
+            @Override
+            public void run() {
+                RecipeSearchResponse response = gson.fromJson(
+                        ResponseBody.create(JSON, body).charStream(), RecipeSearchResponse.class);
+                // what saveCallResult did with it
+                List<Recipe> recipes = response.getRecipes();
+                Recipe[] array = recipes.toArray(new Recipe[recipes.size()]);
+                recipeDao.upsertSearchPage("chicken", 1, new RecipeStream(Arrays.asList(array)),
+                        System.currentTimeMillis());
+            }
+        };
+        Runnable stream = new Runnable() {
+            @Override
+            public void run() {
+                RecipeSearchResponse response = convert(ResponseBody.create(JSON, body));
+                try {
+                    recipeDao.upsertSearchPage("chicken", 1, response.getRecipeStream(), System.currentTimeMillis());
+                } finally {
+                    response.close();
+                }
+            }
+        };
+
+        long[] parsed = new long[RUNS];
+        long[] streamed = new long[RUNS];
+        long[] parsedMicros = new long[RUNS];
+        long[] streamedMicros = new long[RUNS];
+        for(int run = 0; run < RUNS; run++){
+            parsed[run] = peakBytes(parse);
+            streamed[run] = peakBytes(stream);
+            parsedMicros[run] = micros(parse);
+            streamedMicros[run] = micros(stream);
+        }
+
+        Log.i(TAG, "a page of " + recipeCount + " recipes (" + body.length / 1024 + "KB of json): " +
+                "parsed " + median(parsed) / 1024 + "KB, streamed " + median(streamed) / 1024 + "KB at the peak, " +
+                "saved in " + median(parsedMicros) + "us parsed, " + median(streamedMicros) + "us streamed");
+    }
+
+    private static long micros(Runnable work){
+        long start = System.nanoTime();
+        work.run();
+        return (System.nanoTime() - start) / 1000;
+    }
+
+    private RecipeSearchResponse convert(ResponseBody body){
+        @SuppressWarnings("unchecked")
+        Converter<ResponseBody, RecipeSearchResponse> converter = (Converter<ResponseBody, RecipeSearchResponse>)
+                RecipeSearchResponseConverterFactory.create(gson)
+                        .responseBodyConverter(RecipeSearchResponse.class, new Annotation[0], null);
+        try {
+            return converter.convert(body);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Runs work while another thread samples the used heap, and returns how far it got above what
+     * was used before.
+     */
+    private static long peakBytes(Runnable work) throws InterruptedException {
+        final Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        runtime.runFinalization();
+        runtime.gc();
+        final long baseline = runtime.totalMemory() - runtime.freeMemory();
+        final long[] peak = {baseline};
+        final boolean[] isRunning = {true};
+
+        Thread sampler = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while(true){
+                    synchronized (peak){
+                        if(!isRunning[0]){
+                            return;
+                        }
+                        peak[0] = Math.max(peak[0], runtime.totalMemory() - runtime.freeMemory());
+                    }
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }, "heap-sampler");
+        sampler.start();
+        work.run();
+        synchronized (peak){
+            // once more in case the work finished between two samples
+            peak[0] = Math.max(peak[0], runtime.totalMemory() - runtime.freeMemory());
+            isRunning[0] = false;
+        }
+        sampler.join();
+        return peak[0] - baseline;
+    }
+
+    private static long median(long[] values){
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    // the shape of the search api's response, count first
+    private static String buildBody(int recipeCount){
+        StringBuilder json = new StringBuilder("{\"count\": ").append(recipeCount).append(", \"recipes\": [");
+        for(int i = 0; i < recipeCount; i++){
+            if(i > 0){
+                json.append(',');
+            }
+            json.append("{\"recipe_id\": \"r").append(i)
+                    .append("\", \"title\": \"Chicken recipe number ").append(i)
+                    .append("\", \"publisher\": \"Publisher ").append(i % 50)
+                    .append("\", \"image_url\": \"http://static.food2fork.com/r").append(i)
+                    .append(".jpg\", \"social_rank\": ").append(100 - i % 100)
+                    .append(", \"ingredients\": [");
+            for(int j = 0; j < INGREDIENTS_PER_RECIPE; j++){
+                if(j > 0){
+                    json.append(',');
+                }
+                json.append("\"").append(j + 1).append(" cups of ingredient ").append(j).append("\"");
+            }
+            json.append("]}");
+        }
+        return json.append("]}").toString();
+    }
+}
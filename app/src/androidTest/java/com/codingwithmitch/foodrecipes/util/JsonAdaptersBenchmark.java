@@ -0,0 +1,81 @@
+package com.codingwithmitch.foodrecipes.util;
+
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.codingwithmitch.foodrecipes.requests.responses.RecipeResponse;
+import com.codingwithmitch.foodrecipes.requests.responses.RecipeSearchResponse;
+import com.google.gson.Gson;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Times the shared Gson of JsonAdapters against a reflective Gson on the search and detail payloads
+ * JsonAdaptersTest checks (src/test/resources). The time per parse is logged under the
+ * JsonAdaptersBenchmark tag.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class JsonAdaptersBenchmark {
+
+    private static final String TAG = "JsonAdaptersBenchmark";
+
+    private static final int WARM_UP_PARSES = 2000;
+    private static final int PARSES = 5000;
+
+    private final Gson reflective = new Gson();
+    private final Gson adapters = JsonAdapters.getGson();
+
+    @Test
+    public void searchResponse() throws IOException {
+        time("search", read("search_response.json"), RecipeSearchResponse.class);
+    }
+
+    @Test
+    public void recipeResponse() throws IOException {
+        time("get", read("get_response.json"), RecipeResponse.class);
+    }
+
+    private void time(String name, String json, Class<?> type){
+        for(int i = 0; i < WARM_UP_PARSES; i++){
+            reflective.fromJson(json, type);
+            adapters.fromJson(json, type);
+        }
+
+        long start = System.nanoTime();
+        for(int i = 0; i < PARSES; i++){
+            reflective.fromJson(json, type);
+        }
+        long reflection = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for(int i = 0; i < PARSES; i++){
+            adapters.fromJson(json, type);
+        }
+        long adapter = System.nanoTime() - start;
+
+        Log.i(TAG, name + " response, " +
+                adapter / PARSES / 1000.0 + "us per parse (reflection " + reflection / PARSES / 1000.0 + "us)");
+    }
+
+    private String read(String resource) throws IOException {
+        InputStream in = getClass().getClassLoader().getResourceAsStream(resource);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while((read = in.read(buffer)) != -1){
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
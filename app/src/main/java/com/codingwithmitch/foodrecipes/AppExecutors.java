@@ -5,9 +5,10 @@ import android.os.Handler;
 import android.os.Looper;
 import android.support.annotation.NonNull;
 
+import com.codingwithmitch.foodrecipes.util.Constants;
+
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ExecutorService;
 
 public class AppExecutors {
 
@@ -20,7 +21,17 @@ public class AppExecutors {
         return instance;
     }
 
-    private final Executor mDiskIO = Executors.newSingleThreadExecutor();
+    // database writes, one at a time
+    private final InstrumentedThreadPool mDiskIO = new InstrumentedThreadPool("disk-write", 1);
+
+    // database reads, which run alongside the writes with write-ahead logging (see RecipeDatabase)
+    private final InstrumentedThreadPool mDiskRead = new InstrumentedThreadPool("disk-read", Constants.DATABASE_READER_THREADS);
+
+    // parsing and other cpu bound work, so it doesn't hold up the database writer
+    private final InstrumentedThreadPool mCpu = new InstrumentedThreadPool("cpu", Constants.CPU_THREADS);
+
+    // runs the api calls OkHttp sends (see ServiceGenerator), and reads the body of a search response ahead of its save
+    private final InstrumentedThreadPool mNetworkIO = new InstrumentedThreadPool("network", Constants.NETWORK_THREADS);
 
     private final Executor mMainThreadExecutor = new MainThreadExecutor();
 
@@ -29,6 +40,18 @@ public class AppExecutors {
         return mDiskIO;
     }
 
+    public Executor diskRead(){
+        return mDiskRead;
+    }
+
+    public Executor cpu(){
+        return mCpu;
+    }
+
+    public ExecutorService networkIO(){
+        return mNetworkIO;
+    }
+
     public Executor mainThread(){
         return mMainThreadExecutor;
     }
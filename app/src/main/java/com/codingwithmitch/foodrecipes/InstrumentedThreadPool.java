@@ -0,0 +1,115 @@
+package com.codingwithmitch.foodrecipes;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed size pool with named threads ("name-1", "name-2"...) that keeps track of how long tasks
+ * wait in its queue and how long they run, and logs it every STATS_INTERVAL tasks.
+ */
+public class InstrumentedThreadPool extends ThreadPoolExecutor {
+
+    private static final String TAG = "InstrumentedThreadPool";
+
+    private static final int STATS_INTERVAL = 100;
+
+    private final String name;
+
+    // guarded by this
+    private long completedCount;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private long totalRunNanos;
+    private long maxRunNanos;
+    private int maxQueueDepth;
+
+    public InstrumentedThreadPool(final String name, int threads) {
+        super(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(@NonNull Runnable runnable) {
+                        return new Thread(runnable, name + "-" + count.incrementAndGet());
+                    }
+                });
+        this.name = name;
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        super.execute(new TimedRunnable(command));
+        int queueDepth = getQueue().size();
+        synchronized (this){
+            maxQueueDepth = Math.max(maxQueueDepth, queueDepth);
+        }
+    }
+
+    public int getQueueDepth(){
+        return getQueue().size();
+    }
+
+    public synchronized long getAverageWaitMillis(){
+        return completedCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos / completedCount);
+    }
+
+    public synchronized long getAverageRunMillis(){
+        return completedCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalRunNanos / completedCount);
+    }
+
+    private void record(long waitNanos, long runNanos){
+        boolean log;
+        synchronized (this){
+            completedCount++;
+            totalWaitNanos += waitNanos;
+            maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+            totalRunNanos += runNanos;
+            maxRunNanos = Math.max(maxRunNanos, runNanos);
+            log = completedCount % STATS_INTERVAL == 0;
+        }
+        if(log){
+            Log.d(TAG, toString());
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "InstrumentedThreadPool{" +
+                "name=" + name +
+                ", threads=" + getMaximumPoolSize() +
+                ", completed=" + completedCount +
+                ", queueDepth=" + getQueue().size() +
+                ", maxQueueDepth=" + maxQueueDepth +
+                ", averageWait=" + getAverageWaitMillis() +
+                "ms, maxWait=" + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) +
+                "ms, averageRun=" + getAverageRunMillis() +
+                "ms, maxRun=" + TimeUnit.NANOSECONDS.toMillis(maxRunNanos) +
+                "ms}";
+    }
+
+    private class TimedRunnable implements Runnable {
+
+        private final Runnable runnable;
+        private final long queuedAt = System.nanoTime();
+
+        TimedRunnable(Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            long startedAt = System.nanoTime();
+            try {
+                runnable.run();
+            } finally {
+                record(startedAt - queuedAt, System.nanoTime() - startedAt);
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@ import android.widget.TextView;
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.request.RequestOptions;
 import com.codingwithmitch.foodrecipes.models.Recipe;
+import com.codingwithmitch.foodrecipes.models.RecipeSummary;
 import com.codingwithmitch.foodrecipes.util.Resource;
 import com.codingwithmitch.foodrecipes.viewmodels.RecipeViewModel;
 
@@ -49,7 +50,7 @@ public class RecipeActivity extends BaseActivity {
 
     private void getIncomingIntent(){
         if(getIntent().hasExtra("recipe")){
-            Recipe recipe = getIntent().getParcelableExtra("recipe");
+            RecipeSummary recipe = getIntent().getParcelableExtra("recipe");
             Log.d(TAG, "getIncomingIntent: " + recipe.getTitle());
             subscribeObservers(recipe.getRecipe_id());
         }
@@ -64,7 +65,10 @@ public class RecipeActivity extends BaseActivity {
                         switch (recipeResource.status){
 
                             case LOADING:{
+                                // the cached recipe is shown while it's refreshed
+                                showParent();
                                 showProgressBar(true);
+                                setRecipeProperties(recipeResource.data);
                                 break;
                             }
 
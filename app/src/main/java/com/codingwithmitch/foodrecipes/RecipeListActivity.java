@@ -21,7 +21,7 @@ import com.bumptech.glide.request.RequestOptions;
 import com.bumptech.glide.util.ViewPreloadSizeProvider;
 import com.codingwithmitch.foodrecipes.adapters.OnRecipeListener;
 import com.codingwithmitch.foodrecipes.adapters.RecipeRecyclerAdapter;
-import com.codingwithmitch.foodrecipes.models.Recipe;
+import com.codingwithmitch.foodrecipes.models.RecipeSummary;
 import com.codingwithmitch.foodrecipes.util.Resource;
 import com.codingwithmitch.foodrecipes.util.Testing;
 import com.codingwithmitch.foodrecipes.util.VerticalSpacingItemDecorator;
@@ -57,16 +57,19 @@ public class RecipeListActivity extends BaseActivity implements OnRecipeListener
     }
 
     private void subscribeObservers(){
-        mRecipeListViewModel.getRecipes().observe(this, new Observer<Resource<List<Recipe>>>() {
+        mRecipeListViewModel.getRecipes().observe(this, new Observer<Resource<List<RecipeSummary>>>() {
             @Override
-            public void onChanged(@Nullable Resource<List<Recipe>> listResource) {
+            public void onChanged(@Nullable Resource<List<RecipeSummary>> listResource) {
                 if(listResource != null){
                     Log.d(TAG, "onChanged: status: " + listResource.status);
 
                     if(listResource.data != null){
                         switch (listResource.status){
                             case LOADING:{
-                                if(mRecipeListViewModel.getPageNumber() > 1){
+                                if(!listResource.data.isEmpty()){
+                                    // the pages so far, and whatever is cached of this one while it's refreshed
+                                    mAdapter.hideLoading();
+                                    mAdapter.setRecipes(listResource.data);
                                     mAdapter.displayLoading();
                                 }
                                 else{
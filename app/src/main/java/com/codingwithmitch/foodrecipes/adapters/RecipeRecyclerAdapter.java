@@ -17,7 +17,7 @@ import com.bumptech.glide.request.Request;
 import com.bumptech.glide.request.RequestOptions;
 import com.bumptech.glide.util.ViewPreloadSizeProvider;
 import com.codingwithmitch.foodrecipes.R;
-import com.codingwithmitch.foodrecipes.models.Recipe;
+import com.codingwithmitch.foodrecipes.models.RecipeSummary;
 import com.codingwithmitch.foodrecipes.util.Constants;
 
 import java.util.ArrayList;
@@ -33,7 +33,7 @@ public class RecipeRecyclerAdapter extends RecyclerView.Adapter<RecyclerView.Vie
     private static final int CATEGORY_TYPE = 3;
     private static final int EXHAUSTED_TYPE = 4;
 
-    private List<Recipe> mRecipes;
+    private List<RecipeSummary> mRecipes;
     private OnRecipeListener mOnRecipeListener;
     private RequestManager requestManager;
     private ViewPreloadSizeProvider<String> preloadSizeProvider;
@@ -114,7 +114,7 @@ public class RecipeRecyclerAdapter extends RecyclerView.Adapter<RecyclerView.Vie
     // display loading during search request
     public void displayOnlyLoading(){
         clearRecipesList();
-        Recipe recipe = new Recipe();
+        RecipeSummary recipe = new RecipeSummary();
         recipe.setTitle("LOADING...");
         mRecipes.add(recipe);
         notifyDataSetChanged();
@@ -132,21 +132,18 @@ public class RecipeRecyclerAdapter extends RecyclerView.Adapter<RecyclerView.Vie
 
     public void setQueryExhausted(){
         hideLoading();
-        Recipe exhaustedRecipe = new Recipe();
+        RecipeSummary exhaustedRecipe = new RecipeSummary();
         exhaustedRecipe.setTitle("EXHAUSTED...");
         mRecipes.add(exhaustedRecipe);
-        notifyDataSetChanged();
+        notifyItemInserted(mRecipes.size() - 1);
     }
 
     public void hideLoading(){
         if(isLoading()){
-            if(mRecipes.get(0).getTitle().equals("LOADING...")){
-                mRecipes.remove(0);
-            }
-            else if(mRecipes.get(mRecipes.size() - 1).equals("LOADING...")){
-                mRecipes.remove(mRecipes.size() - 1);
-            }
-            notifyDataSetChanged();
+            int index = mRecipes.get(0).getTitle().equals("LOADING...") ? 0 : mRecipes.size() - 1;
+            mRecipes.remove(index);
+            // only the loading row goes, the recipes above it keep their views
+            notifyItemRemoved(index);
         }
     }
 
@@ -156,10 +153,10 @@ public class RecipeRecyclerAdapter extends RecyclerView.Adapter<RecyclerView.Vie
             mRecipes = new ArrayList<>();
         }
         if(!isLoading()){
-            Recipe recipe = new Recipe();
+            RecipeSummary recipe = new RecipeSummary();
             recipe.setTitle("LOADING...");
             mRecipes.add(recipe);
-            notifyDataSetChanged();
+            notifyItemInserted(mRecipes.size() - 1);
         }
     }
 
@@ -175,9 +172,9 @@ public class RecipeRecyclerAdapter extends RecyclerView.Adapter<RecyclerView.Vie
     }
 
     public void displaySearchCategories(){
-        List<Recipe> categories = new ArrayList<>();
+        List<RecipeSummary> categories = new ArrayList<>();
         for(int i = 0; i< Constants.DEFAULT_SEARCH_CATEGORIES.length; i++){
-            Recipe recipe = new Recipe();
+            RecipeSummary recipe = new RecipeSummary();
             recipe.setTitle(Constants.DEFAULT_SEARCH_CATEGORIES[i]);
             recipe.setImage_url(Constants.DEFAULT_SEARCH_CATEGORY_IMAGES[i]);
             recipe.setSocial_rank(-1);
@@ -195,12 +192,34 @@ public class RecipeRecyclerAdapter extends RecyclerView.Adapter<RecyclerView.Vie
         return 0;
     }
 
-    public void setRecipes(List<Recipe> recipes){
-        mRecipes = recipes;
-        notifyDataSetChanged();
+    public void setRecipes(List<RecipeSummary> recipes){
+        if(recipes.equals(mRecipes)){
+            // the pages already shown, emitted again while the next one loads
+            return;
+        }
+        if(isNextPage(recipes)){
+            // only bind the rows of the new page
+            int positionStart = mRecipes.size();
+            mRecipes.addAll(recipes.subList(positionStart, recipes.size()));
+            notifyItemRangeInserted(positionStart, recipes.size() - positionStart);
+        }
+        else{
+            // copy it, the loading and exhausted rows are added to this list
+            mRecipes = new ArrayList<>(recipes);
+            notifyDataSetChanged();
+        }
+    }
+
+    // pages are appended to the previous list, so if the rows being shown are the start of it only the rest is new
+    private boolean isNextPage(List<RecipeSummary> recipes){
+        if(mRecipes == null || mRecipes.isEmpty() || recipes.size() <= mRecipes.size()){
+            return false;
+        }
+        int last = mRecipes.size() - 1;
+        return mRecipes.get(0) == recipes.get(0) && mRecipes.get(last) == recipes.get(last);
     }
 
-    public Recipe getSelectedRecipe(int position){
+    public RecipeSummary getSelectedRecipe(int position){
         if(mRecipes != null){
             if(mRecipes.size() > 0){
                 return mRecipes.get(position);
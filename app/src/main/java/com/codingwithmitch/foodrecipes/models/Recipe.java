@@ -3,12 +3,14 @@ package com.codingwithmitch.foodrecipes.models;
 
 import android.arch.persistence.room.ColumnInfo;
 import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.Ignore;
 import android.arch.persistence.room.PrimaryKey;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.annotation.NonNull;
 
 import java.util.Arrays;
+import java.util.Objects;
 
 @Entity(tableName = "recipes")
 public class Recipe implements Parcelable{
@@ -29,12 +31,17 @@ public class Recipe implements Parcelable{
     @ColumnInfo(name = "social_rank")
     private float social_rank;
 
-    @ColumnInfo(name = "ingredients")
+    // stored in the recipe_ingredients table, see RecipeIngredient
+    @Ignore
     private String[] ingredients;
 
     @ColumnInfo(name = "timestamp")
     private int timestamp;
 
+    // see computeContentHash
+    @ColumnInfo(name = "content_hash")
+    private long content_hash;
+
 
     public Recipe(@NonNull String recipe_id, String title, String publisher, String image_url,
                   float social_rank, String[] ingredients, int timestamp) {
@@ -58,6 +65,7 @@ public class Recipe implements Parcelable{
         social_rank = in.readFloat();
         ingredients = in.createStringArray();
         timestamp = in.readInt();
+        content_hash = in.readLong();
     }
 
     @Override
@@ -69,6 +77,7 @@ public class Recipe implements Parcelable{
         dest.writeFloat(social_rank);
         dest.writeStringArray(ingredients);
         dest.writeInt(timestamp);
+        dest.writeLong(content_hash);
     }
 
     @Override
@@ -136,6 +145,31 @@ public class Recipe implements Parcelable{
         this.social_rank = social_rank;
     }
 
+    public long getContent_hash() {
+        return content_hash;
+    }
+
+    public void setContent_hash(long content_hash) {
+        this.content_hash = content_hash;
+    }
+
+    /**
+     * A 64 bit FNV-1a hash of the fields the search api returns. Stored in content_hash so saving a
+     * recipe can tell whether anything changed without comparing every column.
+     */
+    public long computeContentHash(){
+        long hash = 0xcbf29ce484222325L;
+        for(String field: new String[]{title, publisher, image_url, String.valueOf(social_rank)}){
+            // null and "" hash differently
+            String value = field != null ? field + '\u0001' : "\u0000";
+            for(int i = 0; i < value.length(); i++){
+                hash ^= value.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
     public String getRecipe_id() {
         return recipe_id;
     }
@@ -144,6 +178,38 @@ public class Recipe implements Parcelable{
         this.recipe_id = recipe_id;
     }
 
+    /**
+     * Compares the content hashes instead of the fields they cover, when both recipes have one.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if(this == o){
+            return true;
+        }
+        if(o == null || getClass() != o.getClass()){
+            return false;
+        }
+        Recipe recipe = (Recipe) o;
+        if(!Objects.equals(recipe_id, recipe.recipe_id)
+                || content_hash != recipe.content_hash
+                || timestamp != recipe.timestamp
+                || !Arrays.equals(ingredients, recipe.ingredients)){
+            return false;
+        }
+        if(content_hash != 0){
+            return true;
+        }
+        return Float.compare(social_rank, recipe.social_rank) == 0
+                && Objects.equals(title, recipe.title)
+                && Objects.equals(publisher, recipe.publisher)
+                && Objects.equals(image_url, recipe.image_url);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(recipe_id, content_hash, timestamp);
+    }
+
     @Override
     public String toString() {
         return "Recipe{" +
@@ -154,6 +220,7 @@ public class Recipe implements Parcelable{
                 ", social_rank=" + social_rank +
                 ", ingredients=" + Arrays.toString(ingredients) +
                 ", timestamp=" + timestamp +
+                ", content_hash=" + content_hash +
                 '}';
     }
 }
@@ -0,0 +1,64 @@
+package com.codingwithmitch.foodrecipes.models;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.ForeignKey;
+import android.arch.persistence.room.PrimaryKey;
+import android.support.annotation.NonNull;
+
+import static android.arch.persistence.room.ForeignKey.CASCADE;
+
+/**
+ * When a cached recipe was last shown or saved, used to evict the least recently used recipes.
+ * Kept out of the recipes table so touching a row on every read doesn't invalidate the queries observing it.
+ */
+@Entity(tableName = "recipe_access",
+        foreignKeys = @ForeignKey(
+                entity = Recipe.class,
+                parentColumns = "recipe_id",
+                childColumns = "recipe_id",
+                onDelete = CASCADE
+        )
+)
+public class RecipeAccess {
+
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "recipe_id")
+    private String recipe_id;
+
+    // System.currentTimeMillis()
+    @ColumnInfo(name = "last_accessed")
+    private long last_accessed;
+
+
+    public RecipeAccess(@NonNull String recipe_id, long last_accessed) {
+        this.recipe_id = recipe_id;
+        this.last_accessed = last_accessed;
+    }
+
+    @NonNull
+    public String getRecipe_id() {
+        return recipe_id;
+    }
+
+    public void setRecipe_id(@NonNull String recipe_id) {
+        this.recipe_id = recipe_id;
+    }
+
+    public long getLast_accessed() {
+        return last_accessed;
+    }
+
+    public void setLast_accessed(long last_accessed) {
+        this.last_accessed = last_accessed;
+    }
+
+    @Override
+    public String toString() {
+        return "RecipeAccess{" +
+                "recipe_id='" + recipe_id + '\'' +
+                ", last_accessed=" + last_accessed +
+                '}';
+    }
+}
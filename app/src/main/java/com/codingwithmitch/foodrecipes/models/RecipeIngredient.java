@@ -0,0 +1,72 @@
+package com.codingwithmitch.foodrecipes.models;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.ForeignKey;
+import android.support.annotation.NonNull;
+
+import static android.arch.persistence.room.ForeignKey.CASCADE;
+
+@Entity(tableName = "recipe_ingredients",
+        primaryKeys = {"recipe_id", "position"},
+        foreignKeys = @ForeignKey(
+                entity = Recipe.class,
+                parentColumns = "recipe_id",
+                childColumns = "recipe_id",
+                onDelete = CASCADE
+        )
+)
+public class RecipeIngredient {
+
+    @NonNull
+    @ColumnInfo(name = "recipe_id")
+    private String recipe_id;
+
+    // index of the ingredient in the recipe's ingredient list
+    @ColumnInfo(name = "position")
+    private int position;
+
+    @ColumnInfo(name = "ingredient")
+    private String ingredient;
+
+
+    public RecipeIngredient(@NonNull String recipe_id, int position, String ingredient) {
+        this.recipe_id = recipe_id;
+        this.position = position;
+        this.ingredient = ingredient;
+    }
+
+    @NonNull
+    public String getRecipe_id() {
+        return recipe_id;
+    }
+
+    public void setRecipe_id(@NonNull String recipe_id) {
+        this.recipe_id = recipe_id;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public void setPosition(int position) {
+        this.position = position;
+    }
+
+    public String getIngredient() {
+        return ingredient;
+    }
+
+    public void setIngredient(String ingredient) {
+        this.ingredient = ingredient;
+    }
+
+    @Override
+    public String toString() {
+        return "RecipeIngredient{" +
+                "recipe_id='" + recipe_id + '\'' +
+                ", position=" + position +
+                ", ingredient='" + ingredient + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,165 @@
+package com.codingwithmitch.foodrecipes.models;
+
+
+import android.arch.persistence.room.ColumnInfo;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.util.Objects;
+
+/**
+ * The columns of a recipe the list screen shows. Read by RecipeDao.searchRecipes so the list
+ * never loads ingredients; the full Recipe is only read by RecipeDao.getRecipe.
+ */
+public class RecipeSummary implements Parcelable{
+
+    @ColumnInfo(name = "recipe_id")
+    private String recipe_id;
+
+    @ColumnInfo(name = "title")
+    private String title;
+
+    @ColumnInfo(name = "publisher")
+    private String publisher;
+
+    @ColumnInfo(name = "image_url")
+    private String image_url;
+
+    @ColumnInfo(name = "social_rank")
+    private float social_rank;
+
+    // see Recipe.computeContentHash, 0 for rows that were never hashed
+    @ColumnInfo(name = "content_hash")
+    private long content_hash;
+
+
+    public RecipeSummary() {
+    }
+
+    protected RecipeSummary(Parcel in) {
+        recipe_id = in.readString();
+        title = in.readString();
+        publisher = in.readString();
+        image_url = in.readString();
+        social_rank = in.readFloat();
+        content_hash = in.readLong();
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(recipe_id);
+        dest.writeString(title);
+        dest.writeString(publisher);
+        dest.writeString(image_url);
+        dest.writeFloat(social_rank);
+        dest.writeLong(content_hash);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public static final Creator<RecipeSummary> CREATOR = new Creator<RecipeSummary>() {
+        @Override
+        public RecipeSummary createFromParcel(Parcel in) {
+            return new RecipeSummary(in);
+        }
+
+        @Override
+        public RecipeSummary[] newArray(int size) {
+            return new RecipeSummary[size];
+        }
+    };
+
+    public String getRecipe_id() {
+        return recipe_id;
+    }
+
+    public void setRecipe_id(String recipe_id) {
+        this.recipe_id = recipe_id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getPublisher() {
+        return publisher;
+    }
+
+    public void setPublisher(String publisher) {
+        this.publisher = publisher;
+    }
+
+    public String getImage_url() {
+        return image_url;
+    }
+
+    public void setImage_url(String image_url) {
+        this.image_url = image_url;
+    }
+
+    public float getSocial_rank() {
+        return social_rank;
+    }
+
+    public void setSocial_rank(float social_rank) {
+        this.social_rank = social_rank;
+    }
+
+    public long getContent_hash() {
+        return content_hash;
+    }
+
+    public void setContent_hash(long content_hash) {
+        this.content_hash = content_hash;
+    }
+
+    /**
+     * Compares the content hashes instead of every field, so comparing two reads of a page is cheap.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if(this == o){
+            return true;
+        }
+        if(o == null || getClass() != o.getClass()){
+            return false;
+        }
+        RecipeSummary that = (RecipeSummary) o;
+        if(!Objects.equals(recipe_id, that.recipe_id)
+                || content_hash != that.content_hash){
+            return false;
+        }
+        if(content_hash != 0){
+            return true;
+        }
+        // not hashed, like the rows of the bundled snapshot
+        return Float.compare(social_rank, that.social_rank) == 0
+                && Objects.equals(title, that.title)
+                && Objects.equals(publisher, that.publisher)
+                && Objects.equals(image_url, that.image_url);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(recipe_id, content_hash);
+    }
+
+    @Override
+    public String toString() {
+        return "RecipeSummary{" +
+                "recipe_id='" + recipe_id + '\'' +
+                ", title='" + title + '\'' +
+                ", publisher='" + publisher + '\'' +
+                ", image_url='" + image_url + '\'' +
+                ", social_rank=" + social_rank +
+                ", content_hash=" + content_hash +
+                '}';
+    }
+}
@@ -0,0 +1,51 @@
+package com.codingwithmitch.foodrecipes.models;
+
+import android.arch.persistence.room.Embedded;
+import android.arch.persistence.room.Relation;
+
+import java.util.List;
+
+/**
+ * A recipe row loaded together with its rows from recipe_ingredients.
+ */
+public class RecipeWithIngredients {
+
+    @Embedded
+    private Recipe recipe;
+
+    @Relation(parentColumn = "recipe_id", entityColumn = "recipe_id", entity = RecipeIngredient.class)
+    private List<RecipeIngredient> ingredients;
+
+    public Recipe getRecipe() {
+        return recipe;
+    }
+
+    public void setRecipe(Recipe recipe) {
+        this.recipe = recipe;
+    }
+
+    public List<RecipeIngredient> getIngredients() {
+        return ingredients;
+    }
+
+    public void setIngredients(List<RecipeIngredient> ingredients) {
+        this.ingredients = ingredients;
+    }
+
+    /**
+     * Copies the ingredients back into the recipe in their original order.
+     * If none are cached yet the recipe's ingredients stay null, same as a recipe from a search.
+     */
+    public Recipe toRecipe(){
+        if(ingredients != null && !ingredients.isEmpty()){
+            String[] ordered = new String[ingredients.size()];
+            for(RecipeIngredient ingredient: ingredients){
+                if(ingredient.getPosition() < ordered.length){
+                    ordered[ingredient.getPosition()] = ingredient.getIngredient();
+                }
+            }
+            recipe.setIngredients(ordered);
+        }
+        return recipe;
+    }
+}
@@ -0,0 +1,36 @@
+package com.codingwithmitch.foodrecipes.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The rows RecipeDao.searchRecipes read for a page of a query, and when that page was last fetched
+ * from the api. The fetch time comes from the page's search_results, so a page with no rows still has one.
+ */
+public class SearchPage extends ArrayList<RecipeSummary> {
+
+    // 0 if the page was never fetched
+    private final long fetchedAt;
+
+    public SearchPage(List<RecipeSummary> recipes, long fetchedAt) {
+        super(recipes);
+        this.fetchedAt = fetchedAt;
+    }
+
+    public long getFetchedAt() {
+        return fetchedAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(o instanceof SearchPage && fetchedAt != ((SearchPage) o).fetchedAt){
+            return false;
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + (int) (fetchedAt ^ (fetchedAt >>> 32));
+    }
+}
@@ -0,0 +1,107 @@
+package com.codingwithmitch.foodrecipes.models;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.ForeignKey;
+import android.arch.persistence.room.Index;
+import android.support.annotation.NonNull;
+
+import static android.arch.persistence.room.ForeignKey.CASCADE;
+
+/**
+ * One recipe of a page the search api returned, so the page can be served from the cache until it's stale.
+ */
+@Entity(tableName = "search_results",
+        primaryKeys = {"query", "page", "position"},
+        foreignKeys = @ForeignKey(
+                entity = Recipe.class,
+                parentColumns = "recipe_id",
+                childColumns = "recipe_id",
+                onDelete = CASCADE
+        ),
+        indices = @Index("recipe_id")
+)
+public class SearchResult {
+
+    // normalized, see RecipeDao.normalizeQuery
+    @NonNull
+    @ColumnInfo(name = "query")
+    private String query;
+
+    @ColumnInfo(name = "page")
+    private int page;
+
+    @NonNull
+    @ColumnInfo(name = "recipe_id")
+    private String recipe_id;
+
+    // index of the recipe in the page
+    @ColumnInfo(name = "position")
+    private int position;
+
+    // System.currentTimeMillis()
+    @ColumnInfo(name = "fetched_at")
+    private long fetched_at;
+
+
+    public SearchResult(@NonNull String query, int page, @NonNull String recipe_id, int position, long fetched_at) {
+        this.query = query;
+        this.page = page;
+        this.recipe_id = recipe_id;
+        this.position = position;
+        this.fetched_at = fetched_at;
+    }
+
+    @NonNull
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(@NonNull String query) {
+        this.query = query;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public void setPage(int page) {
+        this.page = page;
+    }
+
+    @NonNull
+    public String getRecipe_id() {
+        return recipe_id;
+    }
+
+    public void setRecipe_id(@NonNull String recipe_id) {
+        this.recipe_id = recipe_id;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public void setPosition(int position) {
+        this.position = position;
+    }
+
+    public long getFetched_at() {
+        return fetched_at;
+    }
+
+    public void setFetched_at(long fetched_at) {
+        this.fetched_at = fetched_at;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchResult{" +
+                "query='" + query + '\'' +
+                ", page=" + page +
+                ", recipe_id='" + recipe_id + '\'' +
+                ", position=" + position +
+                ", fetched_at=" + fetched_at +
+                '}';
+    }
+}
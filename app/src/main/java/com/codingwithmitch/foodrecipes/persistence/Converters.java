@@ -2,37 +2,34 @@ package com.codingwithmitch.foodrecipes.persistence;
 
 import android.arch.persistence.room.TypeConverter;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.codingwithmitch.foodrecipes.util.JsonAdapters;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 
+/**
+ * Reads and writes String[] as a json array, with the same adapter the api models use.
+ * Streams straight over the string instead of building a new Gson and TypeToken for every value.
+ */
 public class Converters {
 
     @TypeConverter
     public static String[] fromString(String value){
-        Type listType = new TypeToken<String[]>(){}.getType();
-        return new Gson().fromJson(value, listType);
+        if(value == null){
+            return null;
+        }
+        try {
+            return JsonAdapters.STRING_ARRAY.fromJson(value);
+        } catch (IOException | IllegalStateException e) {
+            // not a json array of strings
+            return null;
+        }
     }
 
     @TypeConverter
     public static String fromArrayList(String[] list){
-        Gson gson = new Gson();
-        String json = gson.toJson(list);
-        return json;
+        if(list == null){
+            return null;
+        }
+        return JsonAdapters.STRING_ARRAY.toJson(list);
     }
 }
-
-
-
-
-
-
-
-
-
-
-
-
-
-
@@ -1,37 +1,472 @@
 package com.codingwithmitch.foodrecipes.persistence;
 
 import android.arch.lifecycle.LiveData;
+import android.arch.persistence.db.SimpleSQLiteQuery;
+import android.arch.persistence.db.SupportSQLiteQuery;
 import android.arch.persistence.room.Dao;
-import android.arch.persistence.room.Ignore;
 import android.arch.persistence.room.Insert;
 import android.arch.persistence.room.Query;
+import android.arch.persistence.room.RawQuery;
+import android.arch.persistence.room.RoomDatabase;
+import android.arch.persistence.room.Transaction;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
+import com.codingwithmitch.foodrecipes.AppExecutors;
 import com.codingwithmitch.foodrecipes.models.Recipe;
+import com.codingwithmitch.foodrecipes.models.RecipeAccess;
+import com.codingwithmitch.foodrecipes.models.RecipeIngredient;
+import com.codingwithmitch.foodrecipes.models.RecipeSummary;
+import com.codingwithmitch.foodrecipes.models.SearchResult;
+import com.codingwithmitch.foodrecipes.models.RecipeWithIngredients;
+import com.codingwithmitch.foodrecipes.models.SearchPage;
+import com.codingwithmitch.foodrecipes.requests.responses.RecipeStream;
+import com.codingwithmitch.foodrecipes.util.CacheWriteResult;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 import static android.arch.persistence.room.OnConflictStrategy.IGNORE;
 import static android.arch.persistence.room.OnConflictStrategy.REPLACE;
+import static com.codingwithmitch.foodrecipes.util.Constants.RECIPES_PER_PAGE;
+import static com.codingwithmitch.foodrecipes.util.Constants.SAVE_BATCH_SIZE;
 
+/**
+ * The queries returned here aren't invalidated by Room. The writes below report what they touched to
+ * RecipeInvalidationTracker once their transaction commits, and each query only re-runs for the writes
+ * that could change its results.
+ */
 @Dao
-public interface RecipeDao {
+public abstract class RecipeDao {
 
-    @Insert(onConflict = IGNORE)
-    long[] insertRecipes(Recipe... recipe);
+    private final RecipeInvalidationTracker invalidationTracker = RecipeInvalidationTracker.getInstance();
+
+    private final RoomDatabase database;
+
+    public RecipeDao(RoomDatabase database) {
+        this.database = database;
+    }
+
+    /**
+     * Saves the recipes of a page of the search api.
+     * New recipes are inserted. Recipes that are already cached only get the fields the search api
+     * returns updated, and only if their content hash differs; their ingredients and timestamp are kept.
+     * Every recipe in the page counts as accessed now.
+     * @param changedRecipeIds filled with the recipes that were inserted or updated
+     */
+    @Transaction
+    protected CacheWriteResult upsertRecipes(List<Recipe> recipes, List<String> changedRecipeIds){
+        for(Recipe recipe: recipes){
+            recipe.setContent_hash(recipe.computeContentHash());
+        }
+        long[] rowIds = insertRecipes(recipes);
+        long now = System.currentTimeMillis();
+        List<RecipeAccess> accesses = new ArrayList<>(recipes.size());
+        for(int i = 0; i < rowIds.length; i++){
+            Recipe recipe = recipes.get(i);
+            if(rowIds[i] != -1 || updateRecipeIfChanged(
+                    recipe.getRecipe_id(),
+                    recipe.getTitle(),
+                    recipe.getPublisher(),
+                    recipe.getImage_url(),
+                    recipe.getSocial_rank(),
+                    recipe.getContent_hash()) > 0){
+                changedRecipeIds.add(recipe.getRecipe_id());
+            }
+            accesses.add(new RecipeAccess(recipe.getRecipe_id(), now));
+        }
+        insertAccesses(accesses);
+        return new CacheWriteResult(changedRecipeIds.size(), recipes.size() - changedRecipeIds.size());
+    }
+
+    /**
+     * Saves a page from the search api along with the record of which recipes the api returned for it.
+     * If any recipe changed, the queries showing it or this search re-run once, after the page is saved.
+     *
+     * The recipes are read off the stream SAVE_BATCH_SIZE at a time, outside of any transaction, and
+     * each batch is written in a short transaction of its own. So only a batch is in memory, and the
+     * database isn't locked while the body downloads, only while a batch is written. The page's record
+     * is replaced in a last transaction once the whole page was read.
+     * @param fetchedAt when the api sent the page, in milliseconds
+     * @throws com.google.gson.JsonParseException if the stream can't be read. The page's record isn't
+     * touched then. The batches written before it stay, each one holds whole recipes.
+     */
+    public CacheWriteResult upsertSearchPage(String query, int page, RecipeStream recipes, long fetchedAt){
+        String normalizedQuery = normalizeQuery(query);
+        List<String> changedRecipeIds = new ArrayList<>();
+        List<SearchResult> results = new ArrayList<>(RECIPES_PER_PAGE);
+        try {
+            List<Recipe> batch = new ArrayList<>(SAVE_BATCH_SIZE);
+            Recipe recipe;
+            do{
+                recipe = recipes.next();
+                if(recipe != null){
+                    results.add(new SearchResult(normalizedQuery, page, recipe.getRecipe_id(), results.size(), fetchedAt));
+                    batch.add(recipe);
+                }
+                if(batch.size() == SAVE_BATCH_SIZE || (recipe == null && !batch.isEmpty())){
+                    upsertRecipes(batch, changedRecipeIds);
+                    batch.clear();
+                }
+            }while(recipe != null);
+        } catch (RuntimeException e) {
+            if(!changedRecipeIds.isEmpty()){
+                invalidationTracker.notifyRecipesChanged(changedRecipeIds);
+            }
+            throw e;
+        }
+
+        replaceSearchPage(normalizedQuery, page, results);
+        CacheWriteResult result = new CacheWriteResult(changedRecipeIds.size(), results.size() - changedRecipeIds.size());
+        if(result.hasChanges()){
+            result = result.withVersion(invalidationTracker.notifySearchSaved(query, changedRecipeIds));
+        }
+        return result;
+    }
+
+    // the page record only feeds the fetch time, which is read when the page is loaded, so it's rewritten without notifying
+    @Transaction
+    protected void replaceSearchPage(String normalizedQuery, int page, List<SearchResult> results){
+        deleteSearchPage(normalizedQuery, page);
+        insertSearchResults(results);
+    }
 
     @Insert(onConflict = REPLACE)
-    void insertRecipe(Recipe recipe);
+    protected abstract void insertSearchResults(List<SearchResult> results);
+
+    @Query("DELETE FROM search_results WHERE query = :query AND page = :page")
+    protected abstract void deleteSearchPage(String query, int page);
+
+    @Query("DELETE FROM search_results WHERE fetched_at < :fetched_before")
+    public abstract int deleteSearchResultsBefore(long fetched_before);
+
+    @Insert(onConflict = IGNORE)
+    protected abstract long[] insertRecipes(List<Recipe> recipes);
 
-    @Query("UPDATE recipes SET title = :title, publisher = :publisher, image_url = :image_url, social_rank = :social_rank " +
+    @Query("UPDATE recipes SET title = :title, publisher = :publisher, image_url = :image_url, " +
+            "social_rank = :social_rank, content_hash = :content_hash " +
+            "WHERE recipe_id = :recipe_id AND content_hash != :content_hash")
+    protected abstract int updateRecipeIfChanged(String recipe_id, String title, String publisher, String image_url,
+                                                 float social_rank, long content_hash);
+
+    @Query("UPDATE recipes SET title = :title, publisher = :publisher, image_url = :image_url, " +
+            "social_rank = :social_rank, content_hash = :content_hash, timestamp = :timestamp " +
             "WHERE recipe_id = :recipe_id")
-    void updateRecipe(String recipe_id, String title, String publisher, String image_url, float social_rank);
+    protected abstract void updateRecipe(String recipe_id, String title, String publisher, String image_url,
+                                         float social_rank, long content_hash, int timestamp);
+
+    @Query("UPDATE recipes SET timestamp = :timestamp WHERE recipe_id = :recipe_id")
+    protected abstract void updateTimestamp(String recipe_id, int timestamp);
+
+    /**
+     * Searches the title and ingredients through the recipes_fts index (see RecipeDatabase).
+     * Every word in the query is matched as a prefix, so "chick" still finds "chicken".
+     *
+     * Results are paged with a keyset on (social_rank, recipe_id): pass the last recipe of the
+     * previous page as {@code after} (or null for the first page) and only the next
+     * RECIPES_PER_PAGE rows are read, no matter how deep into the results the user has scrolled.
+     *
+     * Saving a page can add rows ranked above {@code after}, which the pages already shown don't have.
+     * So every load also counts the rows up to {@code after}, and if there are no longer
+     * {@code rowsBefore} of them it reads every row from the start through the next page instead.
+     * Use isFromStart to tell which it returned.
+     *
+     * Only the columns the list shows are read. Use getRecipe for the ingredients.
+     *
+     * The rows come back as a SearchPage along with the time page {@code page} of the query was last
+     * fetched from the api (see upsertSearchPage), so the caller can tell whether the page is fresh.
+     * It's read from the page's search_results, not from the rows, which any query may have saved.
+     */
+    public LiveData<List<RecipeSummary>> searchRecipes(String query, int page, @Nullable RecipeSummary after,
+                                                       final int rowsBefore){
+        String match = buildMatchQuery(query);
+        StringBuilder from = new StringBuilder(" FROM recipes");
+        List<Object> matchArgs = new ArrayList<>();
+        if(match != null){
+            from.append(" JOIN recipes_fts ON recipes.rowid = recipes_fts.docid WHERE recipes_fts MATCH ?");
+            matchArgs.add(match);
+        }
+        else{
+            // nothing to match on, so behave like the old LIKE '%%' and return everything
+            from.append(" WHERE 1");
+        }
+
+        String select = "SELECT " + RECIPE_SUMMARY_COLUMNS;
+        String orderBy = " ORDER BY recipes.social_rank DESC, recipes.recipe_id ASC LIMIT ?";
+
+        List<Object> args = new ArrayList<>(matchArgs);
+        StringBuilder sql = new StringBuilder(select).append(from);
+        final SupportSQLiteQuery countQuery;
+        final SupportSQLiteQuery fromStartQuery;
+        if(after != null){
+            sql.append(" AND (recipes.social_rank < ? OR (recipes.social_rank = ? AND recipes.recipe_id > ?))");
+            args.add(after.getSocial_rank());
+            args.add(after.getSocial_rank());
+            args.add(after.getRecipe_id());
+
+            List<Object> countArgs = new ArrayList<>(matchArgs);
+            countArgs.add(after.getSocial_rank());
+            countArgs.add(after.getSocial_rank());
+            countArgs.add(after.getRecipe_id());
+            countQuery = new SimpleSQLiteQuery("SELECT COUNT(*)" + from +
+                    " AND (recipes.social_rank > ? OR (recipes.social_rank = ? AND recipes.recipe_id <= ?))",
+                    countArgs.toArray());
+
+            List<Object> fromStartArgs = new ArrayList<>(matchArgs);
+            fromStartArgs.add(rowsBefore + RECIPES_PER_PAGE);
+            fromStartQuery = new SimpleSQLiteQuery(select + from + orderBy, fromStartArgs.toArray());
+        }
+        else{
+            countQuery = null;
+            fromStartQuery = null;
+        }
+        sql.append(orderBy);
+        args.add(RECIPES_PER_PAGE);
+
+        final SupportSQLiteQuery sqliteQuery = new SimpleSQLiteQuery(sql.toString(), args.toArray());
+        final String normalizedQuery = normalizeQuery(query);
+        final int searchPage = page;
+        final boolean matchesEverything = match == null;
+        return new ScopedQueryLiveData<List<RecipeSummary>>(invalidationTracker, AppExecutors.getInstance().diskRead()) {
+
+            private volatile Set<String> shownRecipeIds = Collections.emptySet();
+
+            @Override
+            protected List<RecipeSummary> compute() {
+                List<RecipeSummary> recipes;
+                if(countQuery != null && countRaw(countQuery) != rowsBefore){
+                    // the pages already shown are missing rows, or show rows that are gone
+                    recipes = searchRecipesRaw(fromStartQuery);
+                }
+                else{
+                    recipes = searchRecipesRaw(sqliteQuery);
+                }
+                Set<String> recipeIds = new HashSet<>();
+                for(RecipeSummary recipe: recipes){
+                    recipeIds.add(recipe.getRecipe_id());
+                }
+                shownRecipeIds = recipeIds;
+                return new SearchPage(recipes, getSearchPageFetchedAt(normalizedQuery, searchPage));
+            }
+
+            // recipes saved by other searches only show up here the next time this search is loaded
+            @Override
+            protected boolean isAffectedBy(@Nullable Set<String> recipeIds, @NonNull Set<String> queries) {
+                if(recipeIds == null || matchesEverything || queries.contains(normalizedQuery)){
+                    return true;
+                }
+                for(String recipeId: recipeIds){
+                    if(shownRecipeIds.contains(recipeId)){
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
 
-    @Query("SELECT * FROM recipes WHERE title LIKE '%' || :query || '%' OR ingredients LIKE '%' || :query || '%' " +
-            "ORDER BY social_rank DESC LIMIT (:pageNumber * 30)")
-    LiveData<List<Recipe>> searchRecipes(String query, int pageNumber);
+    @RawQuery
+    protected abstract List<RecipeSummary> searchRecipesRaw(SupportSQLiteQuery query);
 
+    @RawQuery
+    protected abstract int countRaw(SupportSQLiteQuery query);
+
+    @Query("SELECT IFNULL(MIN(fetched_at), 0) FROM search_results WHERE query = :query AND page = :page")
+    protected abstract long getSearchPageFetchedAt(String query, int page);
+
+    /**
+     * Whether a page searchRecipes returned for the rows after {@code after} is every row from the start instead.
+     * A page after it only has rows ranked below it.
+     */
+    public static boolean isFromStart(List<RecipeSummary> recipes, @Nullable RecipeSummary after){
+        if(after == null){
+            return true;
+        }
+        if(recipes.isEmpty()){
+            return false;
+        }
+        RecipeSummary first = recipes.get(0);
+        return first.getSocial_rank() > after.getSocial_rank()
+                || (first.getSocial_rank() == after.getSocial_rank()
+                        && first.getRecipe_id().compareTo(after.getRecipe_id()) <= 0);
+    }
+
+    private static final String RECIPE_SUMMARY_COLUMNS =
+            "recipes.recipe_id, recipes.title, recipes.publisher, recipes.image_url, recipes.social_rank, recipes.content_hash";
+
+    // re-runs only when this recipe is written
+    public LiveData<Recipe> getRecipe(final String recipe_id){
+        return new ScopedQueryLiveData<Recipe>(invalidationTracker, AppExecutors.getInstance().diskRead()) {
+            @Override
+            protected Recipe compute() {
+                RecipeWithIngredients recipe = getRecipeWithIngredients(recipe_id);
+                return recipe != null ? recipe.toRecipe() : null;
+            }
+
+            @Override
+            protected boolean isAffectedBy(@Nullable Set<String> recipeIds, @NonNull Set<String> queries) {
+                return recipeIds == null || recipeIds.contains(recipe_id);
+            }
+        };
+    }
+
+    @Transaction
     @Query("SELECT * FROM recipes WHERE recipe_id = :recipe_id")
-    LiveData<Recipe> getRecipe(String recipe_id);
+    protected abstract RecipeWithIngredients getRecipeWithIngredients(String recipe_id);
+
+    /**
+     * Saves a recipe fetched from the get api along with its ingredients, replacing whatever was cached.
+     * If the cached recipe has the same content and ingredients only its timestamp is refreshed,
+     * and nothing observing it re-runs.
+     */
+    public CacheWriteResult insertRecipeWithIngredients(Recipe recipe){
+        CacheWriteResult result = saveRecipeWithIngredients(recipe);
+        if(result.hasChanges()){
+            result = result.withVersion(
+                    invalidationTracker.notifyRecipesChanged(Collections.singletonList(recipe.getRecipe_id())));
+        }
+        return result;
+    }
+
+    @Transaction
+    protected CacheWriteResult saveRecipeWithIngredients(Recipe recipe){
+        recipe.setContent_hash(recipe.computeContentHash());
+        RecipeAccess access = new RecipeAccess(recipe.getRecipe_id(), System.currentTimeMillis());
+        RecipeWithIngredients cached = getRecipeWithIngredients(recipe.getRecipe_id());
+        if(cached != null){
+            Recipe cachedRecipe = cached.toRecipe();
+            if(cachedRecipe.getContent_hash() == recipe.getContent_hash()
+                    && Arrays.equals(nullToEmpty(cachedRecipe.getIngredients()), nullToEmpty(recipe.getIngredients()))){
+                updateTimestamp(recipe.getRecipe_id(), recipe.getTimestamp());
+                insertAccesses(Collections.singletonList(access));
+                return new CacheWriteResult(0, 1);
+            }
+            // updated in place, replacing the row would cascade to its search results
+            updateRecipe(
+                    recipe.getRecipe_id(),
+                    recipe.getTitle(),
+                    recipe.getPublisher(),
+                    recipe.getImage_url(),
+                    recipe.getSocial_rank(),
+                    recipe.getContent_hash(),
+                    recipe.getTimestamp()
+            );
+        }
+        else{
+            insertRecipes(Collections.singletonList(recipe));
+        }
+        insertAccesses(Collections.singletonList(access));
+        deleteIngredients(recipe.getRecipe_id());
+        if(recipe.getIngredients() != null){
+            List<RecipeIngredient> ingredients = new ArrayList<>(recipe.getIngredients().length);
+            for(int i = 0; i < recipe.getIngredients().length; i++){
+                ingredients.add(new RecipeIngredient(recipe.getRecipe_id(), i, recipe.getIngredients()[i]));
+            }
+            insertIngredients(ingredients);
+        }
+        indexIngredients(recipe.getRecipe_id());
+        return new CacheWriteResult(1, 0);
+    }
+
+    // once all of them are written, Room doesn't know about recipes_fts so it's run directly (see RecipeDatabase)
+    private void indexIngredients(String recipe_id){
+        database.getOpenHelper().getWritableDatabase()
+                .execSQL(RecipeDatabase.UPDATE_INGREDIENTS_INDEX, new Object[]{recipe_id, recipe_id});
+    }
+
+    private static String[] nullToEmpty(String[] array){
+        return array != null ? array : new String[0];
+    }
+
+    @Insert(onConflict = REPLACE)
+    protected abstract void insertIngredients(List<RecipeIngredient> ingredients);
+
+    @Query("DELETE FROM recipe_ingredients WHERE recipe_id = :recipe_id")
+    protected abstract void deleteIngredients(String recipe_id);
+
+    @Insert(onConflict = REPLACE)
+    protected abstract void insertAccesses(List<RecipeAccess> accesses);
+
+    /**
+     * Marks recipes as read, moving them to the back of the eviction order.
+     * Recipes that were evicted in the meantime are skipped.
+     */
+    @Query("UPDATE recipe_access SET last_accessed = :last_accessed WHERE recipe_id IN (:recipe_ids)")
+    public abstract void touchRecipes(List<String> recipe_ids, long last_accessed);
+
+    /**
+     * Deletes the least recently used recipes until the cache is within both limits, along with their
+     * ingredients and index entries. Each batch is its own transaction so the database isn't locked
+     * for the whole eviction. Must be called off the main thread.
+     * @param maxRecipes max number of cached recipes, 0 for no limit
+     * @param maxBytes max size of the cache as estimated by estimateCacheBytes, 0 for no limit
+     * @return the number of recipes evicted
+     */
+    public int evictLeastRecentlyUsed(int maxRecipes, long maxBytes, int batchSize){
+        int evicted = 0;
+        while(true){
+            int excess = maxRecipes > 0 ? countRecipes() - maxRecipes : 0;
+            if(excess <= 0 && (maxBytes <= 0 || estimateCacheBytes() <= maxBytes)){
+                return evicted;
+            }
+            int deleted = deleteLeastRecentlyUsed(excess > 0 ? Math.min(excess, batchSize) : batchSize);
+            if(deleted == 0){
+                return evicted;
+            }
+            evicted += deleted;
+            invalidationTracker.notifyAllChanged();
+        }
+    }
+
+    @Query("SELECT COUNT(*) FROM recipes")
+    public abstract int countRecipes();
+
+    /**
+     * Roughly how much space the cached recipes take: the length of their text plus a fixed cost per row.
+     * The index in recipes_fts holds about the same text again, so it's counted twice.
+     */
+    @Query("SELECT (SELECT IFNULL(SUM(2 * IFNULL(length(title), 0) + IFNULL(length(recipe_id), 0) " +
+            "+ IFNULL(length(publisher), 0) + IFNULL(length(image_url), 0) + 32), 0) FROM recipes) " +
+            "+ (SELECT IFNULL(SUM(2 * IFNULL(length(ingredient), 0) + 16), 0) FROM recipe_ingredients)")
+    public abstract long estimateCacheBytes();
+
+    // recipes without an access row are treated as never accessed
+    @Query("DELETE FROM recipes WHERE recipe_id IN (SELECT recipes.recipe_id FROM recipes " +
+            "LEFT JOIN recipe_access ON recipes.recipe_id = recipe_access.recipe_id " +
+            "ORDER BY IFNULL(recipe_access.last_accessed, 0) ASC LIMIT :count)")
+    protected abstract int deleteLeastRecentlyUsed(int count);
+
+    // "  Chicken Soup " and "chicken soup" are the same search, in the cache and in RecipeRepository's request keys
+    public static String normalizeQuery(String query){
+        return query == null ? "" : query.trim().toLowerCase(Locale.US);
+    }
+
+    /**
+     * Turns the user's query into an FTS MATCH expression: "Chicken soup" -> "chicken* soup*".
+     * Only letters and digits are kept so the user can't inject FTS operators.
+     * @return null if the query has no searchable words
+     */
+    private static String buildMatchQuery(String query){
+        if(query == null){
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        for(String token: query.toLowerCase(Locale.US).split("[^\\p{L}\\p{N}]+")){
+            if(token.isEmpty()){
+                continue;
+            }
+            if(match.length() > 0){
+                match.append(' ');
+            }
+            match.append(token).append('*');
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
 
 }
 
@@ -1,14 +1,24 @@
 package com.codingwithmitch.foodrecipes.persistence;
 
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteStatement;
 import android.arch.persistence.room.Database;
 import android.arch.persistence.room.Room;
 import android.arch.persistence.room.RoomDatabase;
 import android.arch.persistence.room.TypeConverters;
+import android.arch.persistence.room.migration.Migration;
 import android.content.Context;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 
 import com.codingwithmitch.foodrecipes.models.Recipe;
+import com.codingwithmitch.foodrecipes.models.RecipeAccess;
+import com.codingwithmitch.foodrecipes.models.RecipeIngredient;
+import com.codingwithmitch.foodrecipes.models.SearchResult;
 
-@Database(entities = {Recipe.class}, version = 1)
+@Database(entities = {Recipe.class, RecipeIngredient.class, RecipeAccess.class, SearchResult.class}, version = 7)
 @TypeConverters({Converters.class})
 public abstract class RecipeDatabase extends RoomDatabase {
 
@@ -18,17 +28,210 @@ public abstract class RecipeDatabase extends RoomDatabase {
 
     public static RecipeDatabase getInstance(final Context context){
         if(instance == null){
-            instance = Room.databaseBuilder(
+            instance = configure(Room.databaseBuilder(
                     context.getApplicationContext(),
                     RecipeDatabase.class,
                     DATABASE_NAME
-            ).build();
+            ))
+                    .addCallback(new Callback() {
+                        @Override
+                        public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                            RecipeSnapshot.mergeIfNeeded(context.getApplicationContext(), db);
+                        }
+                    })
+                    .build();
         }
         return instance;
     }
 
+    /**
+     * A database set up like the app's but without the snapshot, for tests and benchmarks.
+     * @param name the name of its file, which is deleted first, or null to keep it in memory
+     */
+    @VisibleForTesting
+    public static RecipeDatabase createForTesting(Context context, @Nullable String name){
+        if(name == null){
+            return configure(Room.inMemoryDatabaseBuilder(context, RecipeDatabase.class)).build();
+        }
+        context.deleteDatabase(name);
+        return configure(Room.databaseBuilder(context, RecipeDatabase.class, name)).build();
+    }
+
+    private static Builder<RecipeDatabase> configure(Builder<RecipeDatabase> builder){
+        return builder
+                // readers see the last commit instead of waiting for the write in progress (saveCallResult)
+                .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
+                .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6,
+                        MIGRATION_6_7)
+                .addCallback(new Callback() {
+                    @Override
+                    public void onCreate(@NonNull SupportSQLiteDatabase db) {
+                        createRecipesFts(db);
+                    }
+                });
+    }
+
     public abstract RecipeDao getRecipeDao();
 
+    /**
+     * Version 2 adds the recipes_fts full-text index used by RecipeDao.searchRecipes.
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS recipes_fts USING fts4(content=`recipes`, title, ingredients)");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS recipes_fts_before_update BEFORE UPDATE ON recipes BEGIN " +
+                    "DELETE FROM recipes_fts WHERE docid = OLD.rowid; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS recipes_fts_before_delete BEFORE DELETE ON recipes BEGIN " +
+                    "DELETE FROM recipes_fts WHERE docid = OLD.rowid; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS recipes_fts_after_update AFTER UPDATE ON recipes BEGIN " +
+                    "INSERT INTO recipes_fts(docid, title, ingredients) VALUES (NEW.rowid, NEW.title, NEW.ingredients); END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS recipes_fts_after_insert AFTER INSERT ON recipes BEGIN " +
+                    "INSERT INTO recipes_fts(docid, title, ingredients) VALUES (NEW.rowid, NEW.title, NEW.ingredients); END");
+            database.execSQL("INSERT INTO recipes_fts(recipes_fts) VALUES('rebuild')");
+        }
+    };
+
+    /**
+     * Version 3 moves the json ingredients column of recipes into the recipe_ingredients table.
+     * SQLite can't drop a column, so recipes is rebuilt and the cached rows are copied across.
+     */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // the old index reads from recipes.ingredients, it's rebuilt below
+            database.execSQL("DROP TRIGGER IF EXISTS recipes_fts_before_update");
+            database.execSQL("DROP TRIGGER IF EXISTS recipes_fts_before_delete");
+            database.execSQL("DROP TRIGGER IF EXISTS recipes_fts_after_update");
+            database.execSQL("DROP TRIGGER IF EXISTS recipes_fts_after_insert");
+            database.execSQL("DROP TABLE IF EXISTS recipes_fts");
+
+            database.execSQL("ALTER TABLE recipes RENAME TO recipes_old");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `recipes` (`recipe_id` TEXT NOT NULL, `title` TEXT, " +
+                    "`publisher` TEXT, `image_url` TEXT, `social_rank` REAL NOT NULL, `timestamp` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`recipe_id`))");
+            database.execSQL("INSERT INTO recipes (recipe_id, title, publisher, image_url, social_rank, timestamp) " +
+                    "SELECT recipe_id, title, publisher, image_url, social_rank, timestamp FROM recipes_old");
+
+            database.execSQL("CREATE TABLE IF NOT EXISTS `recipe_ingredients` (`recipe_id` TEXT NOT NULL, " +
+                    "`position` INTEGER NOT NULL, `ingredient` TEXT, PRIMARY KEY(`recipe_id`, `position`), " +
+                    "FOREIGN KEY(`recipe_id`) REFERENCES `recipes`(`recipe_id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+
+            SupportSQLiteStatement insertIngredient = database.compileStatement(
+                    "INSERT INTO recipe_ingredients (recipe_id, position, ingredient) VALUES (?, ?, ?)");
+            Cursor cursor = database.query("SELECT recipe_id, ingredients FROM recipes_old WHERE ingredients IS NOT NULL");
+            try {
+                while(cursor.moveToNext()){
+                    String[] ingredients = Converters.fromString(cursor.getString(1));
+                    if(ingredients == null){
+                        continue;
+                    }
+                    for(int i = 0; i < ingredients.length; i++){
+                        insertIngredient.bindString(1, cursor.getString(0));
+                        insertIngredient.bindLong(2, i);
+                        if(ingredients[i] != null){
+                            insertIngredient.bindString(3, ingredients[i]);
+                        }
+                        else{
+                            insertIngredient.bindNull(3);
+                        }
+                        insertIngredient.executeInsert();
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+
+            database.execSQL("DROP TABLE recipes_old");
+
+            createRecipesFts(database);
+            database.execSQL("INSERT INTO recipes_fts(docid, title, ingredients) " +
+                    "SELECT rowid, title, (" + SELECT_INGREDIENTS_TEXT + "recipes.recipe_id) FROM recipes");
+        }
+    };
+
+    /**
+     * Version 4 adds recipe_access, which orders recipes for eviction (see RecipeDao.evictLeastRecentlyUsed).
+     * Recipes that were opened keep their refresh time as their last access, list-only recipes go first.
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `recipe_access` (`recipe_id` TEXT NOT NULL, " +
+                    "`last_accessed` INTEGER NOT NULL, PRIMARY KEY(`recipe_id`), " +
+                    "FOREIGN KEY(`recipe_id`) REFERENCES `recipes`(`recipe_id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("INSERT INTO recipe_access (recipe_id, last_accessed) " +
+                    "SELECT recipe_id, timestamp * 1000 FROM recipes");
+        }
+    };
+
+    /**
+     * Version 5 adds search_results, the pages of each query fetched from the search api.
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `search_results` (`query` TEXT NOT NULL, `page` INTEGER NOT NULL, " +
+                    "`recipe_id` TEXT NOT NULL, `position` INTEGER NOT NULL, `fetched_at` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`query`, `page`, `position`), " +
+                    "FOREIGN KEY(`recipe_id`) REFERENCES `recipes`(`recipe_id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_search_results_recipe_id` ON `search_results` (`recipe_id`)");
+        }
+    };
+
+    /**
+     * Version 6 adds recipes.content_hash (see Recipe.computeContentHash). Cached rows start at 0,
+     * so the next save of each one writes it.
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE recipes ADD COLUMN `content_hash` INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    /**
+     * Version 7 drops the triggers that re-indexed a recipe's ingredients once per ingredient row.
+     * RecipeDao indexes them once per recipe instead, see UPDATE_INGREDIENTS_INDEX.
+     */
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("DROP TRIGGER IF EXISTS recipe_ingredients_fts_after_insert");
+            database.execSQL("DROP TRIGGER IF EXISTS recipe_ingredients_fts_after_delete");
+        }
+    };
+
+    // all of a recipe's ingredients as one string, for indexing
+    private static final String SELECT_INGREDIENTS_TEXT =
+            "SELECT group_concat(ingredient, ' ') FROM recipe_ingredients WHERE recipe_ingredients.recipe_id = ";
+
+    /**
+     * Re-indexes the ingredients of the recipe bound to both arguments. RecipeDao runs it once after
+     * writing all of a recipe's ingredients, in the same transaction.
+     */
+    static final String UPDATE_INGREDIENTS_INDEX =
+            "UPDATE recipes_fts SET ingredients = (" + SELECT_INGREDIENTS_TEXT + "?) " +
+                    "WHERE docid = (SELECT rowid FROM recipes WHERE recipe_id = ?)";
+
+    /**
+     * recipes_fts indexes the title from recipes and the ingredients from recipe_ingredients, keyed by
+     * the rowid of the recipe. Room doesn't know about virtual tables, so it's created here and kept in
+     * sync with triggers on recipes. Ingredients are only written along with their recipe, so RecipeDao
+     * indexes them with UPDATE_INGREDIENTS_INDEX rather than a trigger firing for every row.
+     */
+    private static void createRecipesFts(SupportSQLiteDatabase db){
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS recipes_fts USING fts4(title, ingredients)");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS recipes_fts_after_insert AFTER INSERT ON recipes BEGIN " +
+                "INSERT INTO recipes_fts(docid, title, ingredients) " +
+                "VALUES (NEW.rowid, NEW.title, (" + SELECT_INGREDIENTS_TEXT + "NEW.recipe_id)); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS recipes_fts_after_update AFTER UPDATE OF title ON recipes BEGIN " +
+                "UPDATE recipes_fts SET title = NEW.title WHERE docid = NEW.rowid; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS recipes_fts_after_delete AFTER DELETE ON recipes BEGIN " +
+                "DELETE FROM recipes_fts WHERE docid = OLD.rowid; END");
+    }
+
 }
 
 
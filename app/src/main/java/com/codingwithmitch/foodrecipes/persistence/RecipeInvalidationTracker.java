@@ -0,0 +1,82 @@
+package com.codingwithmitch.foodrecipes.persistence;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tells the queries returned by RecipeDao which recipes and searches a write touched, so each one only
+ * re-runs when its own results could have changed. Room's tracker only knows which tables were written,
+ * which re-runs every query on recipes for every write.
+ *
+ * RecipeDao notifies once a write's transaction has committed, so a query never re-runs in the middle of one.
+ */
+public class RecipeInvalidationTracker {
+
+    public interface Observer {
+        /**
+         * Called on the thread that made the write.
+         * @param recipeIds the recipes that were written or deleted, null if any recipe could have changed
+         * @param queries the normalized queries whose search results were saved
+         */
+        void onInvalidated(@Nullable Set<String> recipeIds, @NonNull Set<String> queries);
+    }
+
+    private static RecipeInvalidationTracker instance;
+
+    public static synchronized RecipeInvalidationTracker getInstance(){
+        if(instance == null){
+            instance = new RecipeInvalidationTracker();
+        }
+        return instance;
+    }
+
+    private final List<Observer> observers = new CopyOnWriteArrayList<>();
+
+    // bumped on every notification, so a query that stopped observing can tell if it missed anything,
+    // and a value read at a version is known to include every write notified up to it
+    private final AtomicLong version = new AtomicLong();
+
+    public void addObserver(Observer observer){
+        observers.add(observer);
+    }
+
+    public void removeObserver(Observer observer){
+        observers.remove(observer);
+    }
+
+    public long getVersion(){
+        return version.get();
+    }
+
+    /**
+     * The notify methods return the version of their notification, see CacheWriteResult.getVersion.
+     */
+    public long notifyRecipesChanged(Collection<String> recipeIds){
+        return notifyObservers(new HashSet<>(recipeIds), Collections.<String>emptySet());
+    }
+
+    public long notifySearchSaved(String query, Collection<String> recipeIds){
+        return notifyObservers(new HashSet<>(recipeIds), Collections.singleton(RecipeDao.normalizeQuery(query)));
+    }
+
+    // for writes that can't say which recipes they touched, like eviction
+    public long notifyAllChanged(){
+        return notifyObservers(null, Collections.<String>emptySet());
+    }
+
+    private long notifyObservers(@Nullable Set<String> recipeIds, Set<String> queries){
+        long newVersion = version.incrementAndGet();
+        for(Observer observer: observers){
+            observer.onInvalidated(recipeIds, queries);
+        }
+        return newVersion;
+    }
+}
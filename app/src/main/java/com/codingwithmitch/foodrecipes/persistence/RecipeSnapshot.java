@@ -0,0 +1,158 @@
+package com.codingwithmitch.foodrecipes.persistence;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteStatement;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+import com.codingwithmitch.foodrecipes.BuildConfig;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Merges the recipes bundled with the app into the cache, so the default categories are served
+ * locally before the first network call returns.
+ * The asset is generated at build time by the generateRecipeSnapshot task in app/build.gradle. It holds
+ * the first page of every Constants.DEFAULT_SEARCH_CATEGORIES search, as plain recipes and search_results tables.
+ */
+class RecipeSnapshot {
+
+    private static final String TAG = "RecipeSnapshot";
+
+    static final String ASSET_NAME = "recipes_db";
+
+    private static final String PREFERENCES_NAME = "recipe_snapshot";
+    private static final String KEY_MERGED_VERSION = "merged_version_code";
+
+    /**
+     * Merges the snapshot once per app version: on first launch into the empty database, after an update
+     * into whatever is cached. Recipes already in the cache are never overwritten.
+     */
+    @WorkerThread
+    static void mergeIfNeeded(Context context, SupportSQLiteDatabase db){
+        SharedPreferences preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        if(preferences.getInt(KEY_MERGED_VERSION, -1) == BuildConfig.VERSION_CODE){
+            return;
+        }
+
+        // sqlite can only open a file, so the asset is copied out first
+        File snapshot = new File(context.getCacheDir(), ASSET_NAME);
+        try {
+            copyAsset(context, snapshot);
+            merge(db, snapshot);
+            Log.d(TAG, "mergeIfNeeded: merged the recipe snapshot.");
+        } catch (FileNotFoundException e) {
+            // the build was offline, there's nothing bundled
+            Log.d(TAG, "mergeIfNeeded: no recipe snapshot in this build.");
+        } catch (IOException e) {
+            // try again on the next launch
+            Log.e(TAG, "mergeIfNeeded: couldn't read the recipe snapshot.", e);
+            return;
+        } catch (SQLException e) {
+            // a broken snapshot won't fix itself, so it's skipped for this version
+            Log.e(TAG, "mergeIfNeeded: couldn't merge the recipe snapshot.", e);
+        } finally {
+            snapshot.delete();
+        }
+
+        preferences.edit().putInt(KEY_MERGED_VERSION, BuildConfig.VERSION_CODE).apply();
+    }
+
+    // ATTACH would turn off write-ahead logging for the rest of the session, so the rows are copied across instead
+    private static void merge(SupportSQLiteDatabase db, File snapshotFile){
+        SQLiteDatabase snapshot = SQLiteDatabase.openDatabase(
+                snapshotFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        try {
+            db.beginTransaction();
+            try {
+                // list-only recipes: no ingredients, refreshed from the get api when opened.
+                // never accessed, so they're the first to go when the cache is full
+                SupportSQLiteStatement insertRecipe = db.compileStatement(
+                        "INSERT OR IGNORE INTO recipes (recipe_id, title, publisher, image_url, social_rank, timestamp, content_hash) " +
+                                "VALUES (?, ?, ?, ?, ?, 0, 0)");
+                SupportSQLiteStatement insertAccess = db.compileStatement(
+                        "INSERT OR IGNORE INTO recipe_access (recipe_id, last_accessed) VALUES (?, 0)");
+                Cursor recipes = snapshot.rawQuery(
+                        "SELECT recipe_id, title, publisher, image_url, social_rank FROM recipes", null);
+                try {
+                    while(recipes.moveToNext()){
+                        bindString(insertRecipe, 1, recipes.getString(0));
+                        bindString(insertRecipe, 2, recipes.getString(1));
+                        bindString(insertRecipe, 3, recipes.getString(2));
+                        bindString(insertRecipe, 4, recipes.getString(3));
+                        // stored as a float like the recipes RecipeDao writes, the keyset of searchRecipes
+                        // compares against the float of the last row
+                        insertRecipe.bindDouble(5, (float) recipes.getDouble(4));
+                        insertRecipe.executeInsert();
+
+                        bindString(insertAccess, 1, recipes.getString(0));
+                        insertAccess.executeInsert();
+                    }
+                } finally {
+                    recipes.close();
+                }
+
+                // pages fetched since keep their own results
+                SupportSQLiteStatement insertResult = db.compileStatement(
+                        "INSERT OR IGNORE INTO search_results (query, page, recipe_id, position, fetched_at) " +
+                                "VALUES (?, ?, ?, ?, ?)");
+                Cursor results = snapshot.rawQuery(
+                        "SELECT query, page, recipe_id, position, fetched_at FROM search_results", null);
+                try {
+                    while(results.moveToNext()){
+                        bindString(insertResult, 1, results.getString(0));
+                        insertResult.bindLong(2, results.getLong(1));
+                        bindString(insertResult, 3, results.getString(2));
+                        insertResult.bindLong(4, results.getLong(3));
+                        insertResult.bindLong(5, results.getLong(4));
+                        insertResult.executeInsert();
+                    }
+                } finally {
+                    results.close();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            snapshot.close();
+        }
+    }
+
+    private static void bindString(SupportSQLiteStatement statement, int index, String value){
+        if(value != null){
+            statement.bindString(index, value);
+        }
+        else{
+            statement.bindNull(index);
+        }
+    }
+
+    private static void copyAsset(Context context, File destination) throws IOException {
+        InputStream in = context.getAssets().open(ASSET_NAME);
+        try {
+            OutputStream out = new FileOutputStream(destination);
+            try {
+                byte[] buffer = new byte[8192];
+                int read;
+                while((read = in.read(buffer)) != -1){
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
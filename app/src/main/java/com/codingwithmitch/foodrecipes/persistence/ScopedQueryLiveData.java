@@ -0,0 +1,146 @@
+package com.codingwithmitch.foodrecipes.persistence;
+
+import android.arch.lifecycle.LiveData;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import com.codingwithmitch.foodrecipes.AppExecutors;
+import com.codingwithmitch.foodrecipes.util.CacheVersioned;
+
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A query that re-runs when RecipeInvalidationTracker reports a write within its scope, instead of on
+ * every write to the tables it reads.
+ *
+ * Invalidations are coalesced: however many writes land while the query is running or waiting to run,
+ * it runs once more and delivers one value.
+ *
+ * Each value is delivered along with the tracker version it was read at (see CacheVersioned): the
+ * version is taken before the query runs, and RecipeDao notifies after its transaction commits, so every
+ * write notified up to it is in the value.
+ */
+abstract class ScopedQueryLiveData<T> extends LiveData<T> implements RecipeInvalidationTracker.Observer, CacheVersioned {
+
+    private final RecipeInvalidationTracker tracker;
+    private final Executor executor;
+
+    private final AtomicBoolean invalid = new AtomicBoolean(true);
+    private final AtomicBoolean computing = new AtomicBoolean(false);
+    private volatile boolean active;
+
+    // tracker version when the last observer left, anything newer may have been missed
+    private long inactiveVersion;
+
+    // the version the current value was read at, main thread only
+    private long valueVersion;
+
+    // the last value computed and not delivered yet, like postValue keeps only the latest
+    private final Object pendingLock = new Object();
+    private T pendingValue;
+    private long pendingVersion;
+    private boolean hasPending;
+
+    ScopedQueryLiveData(RecipeInvalidationTracker tracker, Executor executor) {
+        this.tracker = tracker;
+        this.executor = executor;
+    }
+
+    // runs the query, on the executor
+    @WorkerThread
+    protected abstract T compute();
+
+    // whether a write to these recipes or searches could change the result, see RecipeInvalidationTracker.Observer
+    protected abstract boolean isAffectedBy(@Nullable Set<String> recipeIds, @NonNull Set<String> queries);
+
+    @Override
+    protected void onActive() {
+        active = true;
+        tracker.addObserver(this);
+        if(tracker.getVersion() != inactiveVersion){
+            invalid.set(true);
+        }
+        if(invalid.get()){
+            executor.execute(refreshRunnable);
+        }
+    }
+
+    @Override
+    protected void onInactive() {
+        active = false;
+        tracker.removeObserver(this);
+        inactiveVersion = tracker.getVersion();
+    }
+
+    @MainThread
+    @Override
+    public long getValueVersion() {
+        return valueVersion;
+    }
+
+    @Override
+    public void onInvalidated(@Nullable Set<String> recipeIds, @NonNull Set<String> queries) {
+        if(isAffectedBy(recipeIds, queries) && invalid.compareAndSet(false, true) && active){
+            executor.execute(refreshRunnable);
+        }
+    }
+
+    private final Runnable refreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            boolean computed;
+            do {
+                computed = false;
+                if(computing.compareAndSet(false, true)){
+                    try {
+                        T value = null;
+                        long version = 0;
+                        while(invalid.compareAndSet(true, false)){
+                            computed = true;
+                            version = tracker.getVersion();
+                            value = compute();
+                        }
+                        if(computed){
+                            post(value, version);
+                        }
+                    } finally {
+                        computing.set(false);
+                    }
+                }
+                // an invalidation that came in after the loop but before computing was released
+            } while(computed && invalid.get());
+        }
+    };
+
+    // postValue can't carry the version, and the two have to reach the main thread together
+    private void post(T value, long version){
+        boolean isPosted;
+        synchronized (pendingLock){
+            isPosted = hasPending;
+            pendingValue = value;
+            pendingVersion = version;
+            hasPending = true;
+        }
+        if(!isPosted){
+            AppExecutors.getInstance().mainThread().execute(deliverRunnable);
+        }
+    }
+
+    private final Runnable deliverRunnable = new Runnable() {
+        @Override
+        public void run() {
+            T value;
+            synchronized (pendingLock){
+                value = pendingValue;
+                valueVersion = pendingVersion;
+                pendingValue = null;
+                hasPending = false;
+            }
+            setValue(value);
+        }
+    };
+}
@@ -8,24 +8,39 @@ import android.util.Log;
 
 import com.codingwithmitch.foodrecipes.AppExecutors;
 import com.codingwithmitch.foodrecipes.models.Recipe;
+import com.codingwithmitch.foodrecipes.models.RecipeSummary;
+import com.codingwithmitch.foodrecipes.models.SearchPage;
 import com.codingwithmitch.foodrecipes.persistence.RecipeDao;
 import com.codingwithmitch.foodrecipes.persistence.RecipeDatabase;
 import com.codingwithmitch.foodrecipes.requests.ServiceGenerator;
 import com.codingwithmitch.foodrecipes.requests.responses.ApiResponse;
 import com.codingwithmitch.foodrecipes.requests.responses.RecipeResponse;
 import com.codingwithmitch.foodrecipes.requests.responses.RecipeSearchResponse;
+import com.codingwithmitch.foodrecipes.requests.responses.RecipeStream;
+import com.codingwithmitch.foodrecipes.util.CacheWriteResult;
 import com.codingwithmitch.foodrecipes.util.Constants;
+import com.codingwithmitch.foodrecipes.util.FetchPolicy;
 import com.codingwithmitch.foodrecipes.util.NetworkBoundResource;
 import com.codingwithmitch.foodrecipes.util.Resource;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class RecipeRepository {
 
     private static final String TAG = "RecipeRepository";
 
+    // whatever is cached is shown, even offline, while it's refreshed
+    public static final FetchPolicy SEARCH_POLICY =
+            FetchPolicy.staleWhileRevalidate(Constants.SEARCH_RESULTS_TTL, FetchPolicy.FOREVER);
+    public static final FetchPolicy RECIPE_POLICY =
+            FetchPolicy.staleWhileRevalidate(Constants.RECIPE_REFRESH_TIME * 1000L, FetchPolicy.FOREVER);
+
     private static RecipeRepository instance;
     private RecipeDao recipeDao;
+    private final AtomicBoolean isEvictionScheduled = new AtomicBoolean(false);
 
     public static RecipeRepository getInstance(Context context){
         if(instance == null){
@@ -37,48 +52,76 @@ public class RecipeRepository {
 
     private RecipeRepository(Context context) {
         recipeDao = RecipeDatabase.getInstance(context).getRecipeDao();
+        ServiceGenerator.init(context);
     }
 
 
-    public LiveData<Resource<List<Recipe>>> searchRecipesApi(final String query, final int pageNumber){
-        return new NetworkBoundResource<List<Recipe>, RecipeSearchResponse>(AppExecutors.getInstance()){
+    public LiveData<Resource<List<RecipeSummary>>> searchRecipesApi(String query, int pageNumber,
+                                                                    @Nullable RecipeSummary lastRecipe,
+                                                                    int rowsBefore){
+        return searchRecipesApi(query, pageNumber, lastRecipe, rowsBefore, SEARCH_POLICY);
+    }
+
+    /**
+     * @param lastRecipe the last recipe of the previous page, or null for the first page.
+     *                   The cache only returns the rows after it.
+     * @param rowsBefore how many rows the previous pages show. If the cache no longer has that many up to
+     *                   lastRecipe, it returns every row from the start instead, see RecipeDao.searchRecipes.
+     */
+    public LiveData<Resource<List<RecipeSummary>>> searchRecipesApi(final String query, final int pageNumber,
+                                                                    @Nullable final RecipeSummary lastRecipe,
+                                                                    final int rowsBefore,
+                                                                    FetchPolicy fetchPolicy){
+        return new NetworkBoundResource<List<RecipeSummary>, RecipeSearchResponse>(fetchPolicy){
 
             @Override
-            protected void saveCallResult(@NonNull RecipeSearchResponse item) {
+            protected CacheWriteResult saveCallResult(@NonNull RecipeSearchResponse item, long fetchedAt) {
 
-                if(item.getRecipes() != null){ // recipe list will be null if the api key is expired
+                RecipeStream recipes = item.getRecipeStream();
+                if(recipes != null){ // recipe list will be null if the api key is expired
 //                    Log.d(TAG, "saveCallResult: recipe response: " + item.toString());
 
-                    Recipe[] recipes = new Recipe[item.getRecipes().size()];
-
-                    int index = 0;
-                    for(long rowid: recipeDao.insertRecipes((Recipe[]) (item.getRecipes().toArray(recipes)))){
-                        if(rowid == -1){
-                            Log.d(TAG, "saveCallResult: CONFLICT... This recipe is already in the cache");
-                            // if the recipe already exists... I don't want to set the ingredients or timestamp b/c
-                            // they will be erased
-                            recipeDao.updateRecipe(
-                                    recipes[index].getRecipe_id(),
-                                    recipes[index].getTitle(),
-                                    recipes[index].getPublisher(),
-                                    recipes[index].getImage_url(),
-                                    recipes[index].getSocial_rank()
-                            );
+                    // the recipes are read from the response body on a network thread while they're saved,
+                    // for as long as the slowest read of the body could take before it times out
+                    recipes = recipes.readAhead(AppExecutors.getInstance().networkIO(), Constants.SAVE_BATCH_SIZE,
+                            2 * Constants.MAX_READ_TIMEOUT);
+                    // if a recipe is already cached its ingredients and timestamp are kept, see upsertRecipes.
+                    // A body that was cut off or malformed throws a JsonParseException, which RequestCoalescer
+                    // turns into an error: the page wasn't refreshed
+                    try {
+                        CacheWriteResult result = recipeDao.upsertSearchPage(query, pageNumber, recipes, fetchedAt);
+                        if(result.hasChanges()){
+                            scheduleEviction();
                         }
-                        index++;
+                        return result;
+                    } finally {
+                        recipes.close();
                     }
                 }
+                return CacheWriteResult.NONE;
             }
 
             @Override
-            protected boolean shouldFetch(@Nullable List<Recipe> data) {
-                return true;
+            protected long getFetchedAt(@NonNull List<RecipeSummary> data) {
+                // the fetch time of this page of the query, 0 if it was never fetched, see RecipeDao.searchRecipes
+                return data instanceof SearchPage ? ((SearchPage) data).getFetchedAt() : 0;
             }
 
             @NonNull
             @Override
-            protected LiveData<List<Recipe>> loadFromDb() {
-                return recipeDao.searchRecipes(query, pageNumber);
+            protected LiveData<List<RecipeSummary>> loadFromDb() {
+                return recipeDao.searchRecipes(query, pageNumber, lastRecipe, rowsBefore);
+            }
+
+            @Override
+            protected void onLoadedFromDb(@Nullable List<RecipeSummary> data) {
+                if(data != null && !data.isEmpty()){
+                    List<String> recipeIds = new ArrayList<>(data.size());
+                    for(RecipeSummary recipe: data){
+                        recipeIds.add(recipe.getRecipe_id());
+                    }
+                    touchRecipes(recipeIds);
+                }
             }
 
             @NonNull
@@ -91,36 +134,40 @@ public class RecipeRepository {
                                 String.valueOf(pageNumber)
                         );
             }
+
+            @Override
+            protected String getRequestKey() {
+                // the same page of the cache whatever the case and spaces, so it's the same request
+                return "api/search?q=" + RecipeDao.normalizeQuery(query) + "&page=" + pageNumber;
+            }
         }.getAsLiveData();
     }
 
-    public LiveData<Resource<Recipe>> searchRecipesApi(final String recipeId){
-        return new NetworkBoundResource<Recipe, RecipeResponse>(AppExecutors.getInstance()){
+    public LiveData<Resource<Recipe>> searchRecipesApi(String recipeId){
+        return searchRecipesApi(recipeId, RECIPE_POLICY);
+    }
+
+    public LiveData<Resource<Recipe>> searchRecipesApi(final String recipeId, FetchPolicy fetchPolicy){
+        return new NetworkBoundResource<Recipe, RecipeResponse>(fetchPolicy){
             @Override
-            protected void saveCallResult(@NonNull RecipeResponse item) {
+            protected CacheWriteResult saveCallResult(@NonNull RecipeResponse item, long fetchedAt) {
 
                 // will be null if API key is expired
                 if(item.getRecipe() != null){
-                    item.getRecipe().setTimestamp((int)(System.currentTimeMillis() / 1000));
-                    recipeDao.insertRecipe(item.getRecipe());
+                    item.getRecipe().setTimestamp((int)(fetchedAt / 1000));
+                    CacheWriteResult result = recipeDao.insertRecipeWithIngredients(item.getRecipe());
+                    if(result.hasChanges()){
+                        scheduleEviction();
+                    }
+                    return result;
                 }
+                return CacheWriteResult.NONE;
             }
 
             @Override
-            protected boolean shouldFetch(@Nullable Recipe data) {
-                Log.d(TAG, "shouldFetch: recipe: " + data.toString());
-                int currentTime = (int)(System.currentTimeMillis() / 1000);
-                Log.d(TAG, "shouldFetch: current time: " + currentTime);
-                int lastRefresh = data.getTimestamp();
-                Log.d(TAG, "shouldFetch: last refresh: " + lastRefresh);
-                Log.d(TAG, "shouldFetch: it's been " + ((currentTime - lastRefresh) / 60 / 60 / 24) +
-                        " days since this recipe was refreshed. 30 days must elapse before refreshing. ");
-                if((currentTime - data.getTimestamp()) >= Constants.RECIPE_REFRESH_TIME){
-                    Log.d(TAG, "shouldFetch: SHOULD REFRESH RECIPE?! " + true);
-                    return true;
-                }
-                Log.d(TAG, "shouldFetch: SHOULD REFRESH RECIPE?! " + false);
-                return false;
+            protected long getFetchedAt(@NonNull Recipe data) {
+                // in seconds, 0 if the recipe only came from a search
+                return data.getTimestamp() * 1000L;
             }
 
             @NonNull
@@ -129,6 +176,13 @@ public class RecipeRepository {
                 return recipeDao.getRecipe(recipeId);
             }
 
+            @Override
+            protected void onLoadedFromDb(@Nullable Recipe data) {
+                if(data != null){
+                    touchRecipes(Collections.singletonList(data.getRecipe_id()));
+                }
+            }
+
             @NonNull
             @Override
             protected LiveData<ApiResponse<RecipeResponse>> createCall() {
@@ -137,8 +191,52 @@ public class RecipeRepository {
                         recipeId
                 );
             }
+
+            @Override
+            protected String getRequestKey() {
+                return "api/get?rId=" + recipeId;
+            }
         }.getAsLiveData();
     }
+
+    // bumps the recipes in the eviction order, called whenever they're read from the cache
+    private void touchRecipes(final List<String> recipeIds){
+        final long now = System.currentTimeMillis();
+        AppExecutors.getInstance().diskIO().execute(new Runnable() {
+            @Override
+            public void run() {
+                recipeDao.touchRecipes(recipeIds, now);
+            }
+        });
+    }
+
+    /**
+     * Queues an eviction pass on the disk executor after new recipes were saved.
+     * Only one pass is queued at a time, saves made before it runs are covered by it.
+     */
+    private void scheduleEviction(){
+        if(!isEvictionScheduled.compareAndSet(false, true)){
+            return;
+        }
+        AppExecutors.getInstance().diskIO().execute(new Runnable() {
+            @Override
+            public void run() {
+                isEvictionScheduled.set(false);
+                // a page is kept for as long as the search policy would show it, the bundled snapshot's too
+                if(SEARCH_POLICY.maxStale != FetchPolicy.FOREVER){
+                    recipeDao.deleteSearchResultsBefore(System.currentTimeMillis() - SEARCH_POLICY.maxStale);
+                }
+                int evicted = recipeDao.evictLeastRecentlyUsed(
+                        Constants.CACHE_MAX_RECIPES,
+                        Constants.CACHE_MAX_BYTES,
+                        Constants.CACHE_EVICTION_BATCH_SIZE
+                );
+                if(evicted > 0){
+                    Log.d(TAG, "scheduleEviction: evicted " + evicted + " recipes from the cache.");
+                }
+            }
+        });
+    }
 }
 
 
@@ -152,3 +250,4 @@ public class RecipeRepository {
 
 
 
+
@@ -0,0 +1,64 @@
+package com.codingwithmitch.foodrecipes.requests;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Sets the timeouts of each attempt from the latencies LatencyTracker saw lately, instead of the same
+ * fixed ones for every link: a percentile of the recent latencies times a margin, kept within bounds.
+ * A fast link gives up on a dead server quickly, and a slow one doesn't cut off responses that were coming.
+ *
+ * Until the tracker has enough samples the client's timeouts are used, within the same bounds.
+ * The write timeout follows the read timeout, the api only sends GETs without a body.
+ */
+public class AdaptiveTimeoutInterceptor implements Interceptor {
+
+    private static final String TAG = "AdaptiveTimeout";
+
+    private final LatencyTracker latencyTracker;
+    private final double percentile;
+    private final double multiplier;
+    private final long minConnectMillis;
+    private final long maxConnectMillis;
+    private final long minReadMillis;
+    private final long maxReadMillis;
+
+    public AdaptiveTimeoutInterceptor(LatencyTracker latencyTracker, double percentile, double multiplier,
+                                      long minConnectMillis, long maxConnectMillis,
+                                      long minReadMillis, long maxReadMillis) {
+        this.latencyTracker = latencyTracker;
+        this.percentile = percentile;
+        this.multiplier = multiplier;
+        this.minConnectMillis = minConnectMillis;
+        this.maxConnectMillis = maxConnectMillis;
+        this.minReadMillis = minReadMillis;
+        this.maxReadMillis = maxReadMillis;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        HttpUrl url = chain.request().url();
+        int connectTimeout = timeout(latencyTracker.getConnectLatency(url.host(), percentile),
+                chain.connectTimeoutMillis(), minConnectMillis, maxConnectMillis);
+        int readTimeout = timeout(latencyTracker.getResponseLatency(url, percentile),
+                chain.readTimeoutMillis(), minReadMillis, maxReadMillis);
+        Log.d(TAG, "intercept: " + url.encodedPath() + " connect " + connectTimeout + "ms, read " + readTimeout + "ms");
+
+        return chain
+                .withConnectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+                .withReadTimeout(readTimeout, TimeUnit.MILLISECONDS)
+                .withWriteTimeout(readTimeout, TimeUnit.MILLISECONDS)
+                .proceed(chain.request());
+    }
+
+    private int timeout(long latency, long defaultMillis, long minMillis, long maxMillis){
+        long millis = latency == -1 ? defaultMillis : (long) (latency * multiplier);
+        return (int) Math.max(minMillis, Math.min(maxMillis, millis));
+    }
+}
@@ -0,0 +1,39 @@
+package com.codingwithmitch.foodrecipes.requests;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Network interceptor that lets OkHttp cache responses the server sends without any caching headers,
+ * for {@code maxAgeSeconds}. Validators (ETag, Last-Modified) are left as they are, so once the response
+ * is stale OkHttp revalidates it with a conditional request instead of downloading it again.
+ * Responses that come with Cache-Control or Expires are left alone.
+ *
+ * RecipeApi asks for every response to be revalidated whatever its max-age, so this only decides
+ * whether a response is stored at all; CircuitBreakerInterceptor serves it stale while the backend is down.
+ */
+public class CacheControlInterceptor implements Interceptor {
+
+    private final int maxAgeSeconds;
+
+    public CacheControlInterceptor(int maxAgeSeconds) {
+        this.maxAgeSeconds = maxAgeSeconds;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+        if(!chain.request().method().equals("GET") || !response.isSuccessful()){
+            return response;
+        }
+        if(response.header("Cache-Control") != null || response.header("Expires") != null){
+            return response;
+        }
+        return response.newBuilder()
+                .removeHeader("Pragma")
+                .header("Cache-Control", "public, max-age=" + maxAgeSeconds)
+                .build();
+    }
+}
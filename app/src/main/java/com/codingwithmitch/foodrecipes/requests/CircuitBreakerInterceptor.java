@@ -0,0 +1,133 @@
+package com.codingwithmitch.foodrecipes.requests;
+
+import android.util.Log;
+
+import java.io.IOException;
+
+import okhttp3.CacheControl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Stops calling the backend while it's down.
+ *
+ * After {@code failureThreshold} failures in a row (an IOException or a 5xx response, after retries) the
+ * circuit opens for {@code openMillis}. While it's open requests don't touch the network: they're answered
+ * from the HTTP cache, stale or not, or fail with a 504 if there's nothing cached, which
+ * NetworkBoundResource turns into an error over the data already in the database.
+ * A response from the cache keeps the time it was first received, which is saved as its fetch time
+ * (see ApiSuccessResponse.getReceivedAt), so old data doesn't count as fresh once it's in the database.
+ * Once the time is up a single request is let through; if it succeeds the circuit closes again.
+ */
+public class CircuitBreakerInterceptor implements Interceptor {
+
+    private static final String TAG = "CircuitBreaker";
+
+    // swapped out in tests to move time forward
+    public interface Clock {
+        long currentTimeMillis();
+    }
+
+    private static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final Clock clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    public CircuitBreakerInterceptor(int failureThreshold, long openMillis) {
+        this(failureThreshold, openMillis, SYSTEM_CLOCK);
+    }
+
+    public CircuitBreakerInterceptor(int failureThreshold, long openMillis, Clock clock) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.clock = clock;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if(!allowRequest()){
+            Log.d(TAG, "intercept: circuit open, answering from the cache: " + request.url().encodedPath());
+            return chain.proceed(request.newBuilder().cacheControl(CacheControl.FORCE_CACHE).build());
+        }
+
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            // a call cancelled by the app or preempted by RequestScheduler says nothing about the backend
+            if(chain.call().isCanceled()){
+                onCancelled();
+            }
+            else{
+                onFailure();
+            }
+            throw e;
+        }
+        if(response.code() >= 500){
+            onFailure();
+        }
+        else{
+            onSuccess();
+        }
+        return response;
+    }
+
+    public synchronized State getState(){
+        return state;
+    }
+
+    private synchronized boolean allowRequest(){
+        switch (state){
+            case OPEN:{
+                if(clock.currentTimeMillis() - openedAt < openMillis){
+                    return false;
+                }
+                // let one request through to see if the backend is back
+                state = State.HALF_OPEN;
+                return true;
+            }
+            case HALF_OPEN:{
+                // the trial request is still running
+                return false;
+            }
+            default:{
+                return true;
+            }
+        }
+    }
+
+    private synchronized void onSuccess(){
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    private synchronized void onCancelled(){
+        if(state == State.HALF_OPEN){
+            // openedAt has passed already, so the next request becomes the trial instead
+            state = State.OPEN;
+        }
+    }
+
+    private synchronized void onFailure(){
+        consecutiveFailures++;
+        if(state == State.HALF_OPEN || consecutiveFailures >= failureThreshold){
+            Log.d(TAG, "onFailure: opening the circuit after " + consecutiveFailures + " failures.");
+            state = State.OPEN;
+            openedAt = clock.currentTimeMillis();
+        }
+    }
+}
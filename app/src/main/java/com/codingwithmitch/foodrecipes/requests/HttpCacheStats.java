@@ -0,0 +1,98 @@
+package com.codingwithmitch.foodrecipes.requests;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Counts how each request was served by the OkHttp cache:
+ * hit (from the cache, no network), conditional hit (revalidated, the server answered 304 with no body)
+ * or miss (full body from the network).
+ * A request that may only use the cache (only-if-cached, e.g. CacheControl.FORCE_CACHE) and finds nothing
+ * usable gets a 504 OkHttp makes up without going to the network. It's counted as unsatisfiable, not as a miss,
+ * so the misses are only the requests that did download a body.
+ * Added as an application interceptor so it sees the final response with both its cache and network parts.
+ */
+public class HttpCacheStats implements Interceptor {
+
+    private static final String TAG = "HttpCacheStats";
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong conditionalHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong unsatisfiableCount = new AtomicLong();
+
+    // body bytes that didn't have to be downloaded, only counted when the cached response has a Content-Length
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+        Response cacheResponse = response.cacheResponse();
+        Response networkResponse = response.networkResponse();
+
+        if(cacheResponse != null && networkResponse == null){
+            hitCount.incrementAndGet();
+            addBytesSaved(cacheResponse);
+        }
+        else if(cacheResponse != null && networkResponse.code() == HttpURLConnection.HTTP_NOT_MODIFIED){
+            conditionalHitCount.incrementAndGet();
+            addBytesSaved(cacheResponse);
+        }
+        else if(networkResponse == null){
+            unsatisfiableCount.incrementAndGet();
+        }
+        else{
+            missCount.incrementAndGet();
+        }
+        Log.d(TAG, "intercept: " + chain.request().url().encodedPath() + " " + this);
+        return response;
+    }
+
+    private void addBytesSaved(Response cacheResponse){
+        String contentLength = cacheResponse.header("Content-Length");
+        if(contentLength != null){
+            try {
+                bytesSaved.addAndGet(Long.parseLong(contentLength));
+            } catch (NumberFormatException e) {
+                // not counted
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getConditionalHitCount() {
+        return conditionalHitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getUnsatisfiableCount() {
+        return unsatisfiableCount.get();
+    }
+
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    @Override
+    public String toString() {
+        return "HttpCacheStats{" +
+                "hits=" + hitCount +
+                ", conditionalHits=" + conditionalHitCount +
+                ", misses=" + missCount +
+                ", unsatisfiable=" + unsatisfiableCount +
+                ", bytesSaved=" + bytesSaved +
+                '}';
+    }
+}
@@ -0,0 +1,194 @@
+package com.codingwithmitch.foodrecipes.requests;
+
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.HttpUrl;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Records how long recent calls took, from OkHttp's call events, for AdaptiveTimeoutInterceptor.
+ *
+ * Two latencies are kept, over the last windowSize samples each:
+ * connecting, per host, and waiting for the response headers once the request is sent, per endpoint
+ * (host and path). The wait for the headers is the longest gap a read timeout has to cover.
+ * Attempts that fail part way, a timeout included, count as taking as long as they ran, so a slow
+ * link raises the percentiles instead of only timing out. That holds for each attempt RetryInterceptor
+ * makes, not only the last one: an attempt is over when its connection is released.
+ * Cached responses don't touch the network and aren't counted, nor are cancelled calls, which stopped
+ * because RequestScheduler or the app no longer wanted them and not because of the network.
+ */
+public class LatencyTracker implements EventListener.Factory {
+
+    private final int windowSize;
+    private final int minSamples;
+
+    // guarded by this
+    private final Map<String, LatencyWindow> connectLatencies = new HashMap<>();
+    private final Map<String, LatencyWindow> responseLatencies = new HashMap<>();
+
+    /**
+     * @param minSamples percentiles aren't given until there are this many samples
+     */
+    public LatencyTracker(int windowSize, int minSamples) {
+        this.windowSize = windowSize;
+        this.minSamples = minSamples;
+    }
+
+    /**
+     * @return the percentile of the recent connect times to the host, in milliseconds, or -1 if there are too few
+     */
+    public synchronized long getConnectLatency(String host, double percentile){
+        return percentileOf(connectLatencies.get(host), percentile);
+    }
+
+    /**
+     * @return the percentile of the recent waits for a response from the endpoint, in milliseconds,
+     * or -1 if there are too few
+     */
+    public synchronized long getResponseLatency(HttpUrl url, double percentile){
+        return percentileOf(responseLatencies.get(endpointOf(url)), percentile);
+    }
+
+    @Override
+    public EventListener create(Call call) {
+        HttpUrl url = call.request().url();
+        return new CallListener(url.host(), endpointOf(url));
+    }
+
+    private synchronized void add(Map<String, LatencyWindow> latencies, String key, long startNanos){
+        LatencyWindow window = latencies.get(key);
+        if(window == null){
+            window = new LatencyWindow(windowSize);
+            latencies.put(key, window);
+        }
+        window.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    private long percentileOf(@Nullable LatencyWindow window, double percentile){
+        if(window == null || window.count < minSamples){
+            return -1;
+        }
+        return window.percentile(percentile);
+    }
+
+    private static String endpointOf(HttpUrl url){
+        return url.host() + url.encodedPath();
+    }
+
+    // one per call, which can make several attempts
+    private class CallListener extends EventListener {
+
+        private final String host;
+        private final String endpoint;
+
+        // -1 when the phase isn't running
+        private long connectStart = -1;
+        private long requestSent = -1;
+
+        CallListener(String host, String endpoint) {
+            this.host = host;
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connectStart = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, @Nullable Protocol protocol) {
+            endConnect();
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+                                  @Nullable Protocol protocol, IOException ioe) {
+            endConnect();
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            requestSent = System.nanoTime();
+        }
+
+        // the end of an attempt. If it failed before the headers came that's when the wait ended
+        @Override
+        public void connectionReleased(Call call, Connection connection) {
+            endAttempt(call);
+        }
+
+        // responseHeadersStart is called before the headers are read, this once they're in
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            endResponseWait();
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            endAttempt(call);
+        }
+
+        private void endAttempt(Call call){
+            if(call.isCanceled()){
+                connectStart = -1;
+                requestSent = -1;
+                return;
+            }
+            endConnect();
+            endResponseWait();
+        }
+
+        private void endConnect(){
+            if(connectStart != -1){
+                add(connectLatencies, host, connectStart);
+                connectStart = -1;
+            }
+        }
+
+        private void endResponseWait(){
+            if(requestSent != -1){
+                add(responseLatencies, endpoint, requestSent);
+                requestSent = -1;
+            }
+        }
+    }
+
+    // the last samples, oldest overwritten first
+    private static class LatencyWindow {
+
+        private final long[] samples;
+        private int count;
+        private int next;
+
+        LatencyWindow(int size) {
+            samples = new long[size];
+        }
+
+        void add(long millis){
+            samples[next] = millis;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        // nearest rank
+        long percentile(double percentile){
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile * count);
+            return sorted[Math.max(0, Math.min(count - 1, rank - 1))];
+        }
+    }
+}
@@ -8,11 +8,20 @@ import com.codingwithmitch.foodrecipes.requests.responses.RecipeSearchResponse;
 
 import retrofit2.Call;
 import retrofit2.http.GET;
+import retrofit2.http.Headers;
 import retrofit2.http.Query;
 
+/**
+ * NetworkBoundResource only calls the api once its FetchPolicy wants data from the server, so a response
+ * in the OkHttp cache is always revalidated (a 304 if it hasn't changed) instead of being returned as is.
+ * Only CircuitBreakerInterceptor answers straight from the cache.
+ */
 public interface RecipeApi {
 
+    String REVALIDATE = "Cache-Control: max-age=0";
+
     // SEARCH
+    @Headers(REVALIDATE)
     @GET("api/search")
     LiveData<ApiResponse<RecipeSearchResponse>> searchRecipe(
             @Query("key") String key,
@@ -21,6 +30,7 @@ public interface RecipeApi {
     );
 
     // GET RECIPE REQUEST
+    @Headers(REVALIDATE)
     @GET("api/get")
     LiveData<ApiResponse<RecipeResponse>> getRecipe(
             @Query("key") String key,
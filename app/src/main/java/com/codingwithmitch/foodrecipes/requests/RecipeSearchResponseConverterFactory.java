@@ -0,0 +1,117 @@
+package com.codingwithmitch.foodrecipes.requests;
+
+import com.codingwithmitch.foodrecipes.models.Recipe;
+import com.codingwithmitch.foodrecipes.requests.responses.RecipeSearchResponse;
+import com.codingwithmitch.foodrecipes.requests.responses.RecipeStream;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * Parses search responses without reading the recipes. count and error are read up front so
+ * ApiResponse can check them, then the body is left open at the recipes array and handed over as a
+ * RecipeStream, which the repository reads straight into the database a few recipes at a time.
+ *
+ * The api sends count before recipes. If it doesn't, the recipes have to be parsed to get to it, and
+ * the stream is backed by the parsed list instead.
+ *
+ * Must be added before GsonConverterFactory, which handles every other type.
+ */
+public class RecipeSearchResponseConverterFactory extends Converter.Factory {
+
+    private final Gson gson;
+
+    public static RecipeSearchResponseConverterFactory create(Gson gson){
+        return new RecipeSearchResponseConverterFactory(gson);
+    }
+
+    private RecipeSearchResponseConverterFactory(Gson gson) {
+        this.gson = gson;
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        if(type != RecipeSearchResponse.class){
+            return null;
+        }
+        return new RecipeSearchResponseConverter(gson.getAdapter(Recipe.class));
+    }
+
+    static class RecipeSearchResponseConverter implements Converter<ResponseBody, RecipeSearchResponse> {
+
+        private final TypeAdapter<Recipe> recipeAdapter;
+
+        RecipeSearchResponseConverter(TypeAdapter<Recipe> recipeAdapter) {
+            this.recipeAdapter = recipeAdapter;
+        }
+
+        @Override
+        public RecipeSearchResponse convert(ResponseBody body) throws IOException {
+            JsonReader reader = new JsonReader(body.charStream());
+            boolean isStreaming = false;
+            try {
+                int count = 0;
+                boolean hasCount = false;
+                String error = null;
+                List<Recipe> recipes = null;
+
+                reader.beginObject();
+                while(reader.hasNext()){
+                    String name = reader.nextName();
+                    if(reader.peek() == JsonToken.NULL){
+                        reader.nextNull();
+                        continue;
+                    }
+                    switch (name){
+                        case "count":{
+                            count = reader.nextInt();
+                            hasCount = true;
+                            break;
+                        }
+                        case "error":{
+                            error = reader.nextString();
+                            break;
+                        }
+                        case "recipes":{
+                            reader.beginArray();
+                            if(hasCount){
+                                // the rest of the body is read by the stream
+                                isStreaming = true;
+                                return new RecipeSearchResponse(count, error, new RecipeStream(reader, recipeAdapter));
+                            }
+                            recipes = new ArrayList<>();
+                            while(reader.hasNext()){
+                                recipes.add(recipeAdapter.read(reader));
+                            }
+                            reader.endArray();
+                            break;
+                        }
+                        default:{
+                            reader.skipValue();
+                        }
+                    }
+                }
+                reader.endObject();
+                return new RecipeSearchResponse(count, error, recipes != null ? new RecipeStream(recipes) : null);
+            } catch (IllegalStateException | NumberFormatException e) {
+                throw new JsonSyntaxException(e);
+            } finally {
+                if(!isStreaming){
+                    body.close();
+                }
+            }
+        }
+    }
+}
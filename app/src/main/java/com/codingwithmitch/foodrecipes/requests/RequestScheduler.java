@@ -0,0 +1,299 @@
+package com.codingwithmitch.foodrecipes.requests;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.codingwithmitch.foodrecipes.util.Cancellable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import okhttp3.HttpUrl;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import static com.codingwithmitch.foodrecipes.util.Constants.API_MAX_BACKGROUND_REQUESTS;
+import static com.codingwithmitch.foodrecipes.util.Constants.API_MAX_REQUESTS;
+
+/**
+ * Decides when each api call is handed to OkHttp, so a recipe the user tapped on doesn't wait behind
+ * pages they scrolled past.
+ *
+ * Interactive calls (recipe details and first pages of a search) always go first and can use all of
+ * the maxRequests slots. Background calls (the next pages) use at most maxBackgroundRequests, and
+ * when an interactive call is waiting for a slot the most recently started background call is
+ * cancelled and queued again at the front, to be sent once there's room.
+ *
+ * A cancelled or preempted call stays in OkHttp until its thread notices, which can take a while if it's
+ * in the middle of a read or RetryInterceptor's backoff. Until its callback comes it still takes one of
+ * OkHttp's slots and a network thread, so it counts against maxRequests for background calls but not for
+ * interactive ones, which would otherwise wait behind it. The calls handed to OkHttp are then at most
+ * twice maxRequests, plus any calls cancelled by the caller that are still winding down: the Dispatcher's
+ * limits and the network threads need that much room, or interactive calls would queue there instead
+ * (see API_MAX_CALLS).
+ */
+public class RequestScheduler {
+
+    private static final String TAG = "RequestScheduler";
+
+    public enum Priority {INTERACTIVE, BACKGROUND}
+
+    private static RequestScheduler instance;
+
+    public static synchronized RequestScheduler getInstance(){
+        if(instance == null){
+            instance = new RequestScheduler(API_MAX_REQUESTS, API_MAX_BACKGROUND_REQUESTS);
+        }
+        return instance;
+    }
+
+    /**
+     * Details are opened by a tap, and the first page of a search is what the user is looking at.
+     * Any later page can wait.
+     */
+    public static Priority priorityOf(okhttp3.Request request){
+        HttpUrl url = request.url();
+        String page = url.queryParameter("page");
+        if(url.encodedPath().endsWith("/get") || page == null || page.equals("1")){
+            return Priority.INTERACTIVE;
+        }
+        return Priority.BACKGROUND;
+    }
+
+    private final int maxRequests;
+    private final int maxBackgroundRequests;
+
+    private final Deque<Task<?>> interactiveQueue = new ArrayDeque<>();
+    private final Deque<Task<?>> backgroundQueue = new ArrayDeque<>();
+
+    // in the order they were started
+    private final List<Task<?>> running = new ArrayList<>();
+
+    // calls handed to OkHttp whose callback hasn't come yet, the running ones and those winding down
+    private int inFlight;
+
+    private final QueueStats interactiveStats = new QueueStats();
+    private final QueueStats backgroundStats = new QueueStats();
+    private int preemptionCount;
+
+    public RequestScheduler(int maxRequests, int maxBackgroundRequests) {
+        this.maxRequests = maxRequests;
+        this.maxBackgroundRequests = maxBackgroundRequests;
+    }
+
+    public <R> Cancellable enqueue(Call<R> call, Callback<R> callback){
+        return enqueue(call, priorityOf(call.request()), callback);
+    }
+
+    /**
+     * @return cancels the call, whether it's queued or running. The callback isn't called afterwards.
+     */
+    public synchronized <R> Cancellable enqueue(Call<R> call, Priority priority, Callback<R> callback){
+        Task<R> task = new Task<>(call, priority, callback);
+        queueOf(priority).addLast(task);
+        promote();
+        return task;
+    }
+
+    public synchronized QueueStats getStats(Priority priority){
+        return new QueueStats(statsOf(priority));
+    }
+
+    public synchronized int getPreemptionCount(){
+        return preemptionCount;
+    }
+
+    private synchronized void promote(){
+        while(!interactiveQueue.isEmpty()){
+            if(running.size() >= maxRequests && !preemptBackgroundTask()){
+                break;
+            }
+            start(interactiveQueue.pollFirst());
+        }
+        while(!backgroundQueue.isEmpty()
+                && inFlight < maxRequests
+                && countRunning(Priority.BACKGROUND) < maxBackgroundRequests){
+            start(backgroundQueue.pollFirst());
+        }
+    }
+
+    private boolean preemptBackgroundTask(){
+        for(int i = running.size() - 1; i >= 0; i--){
+            Task<?> task = running.get(i);
+            if(task.priority == Priority.BACKGROUND){
+                Log.d(TAG, "preemptBackgroundTask: requeueing " + task.call.request().url().encodedQuery());
+                running.remove(i);
+                task.requeue();
+                backgroundQueue.addFirst(task);
+                preemptionCount++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private <R> void start(final Task<R> task){
+        long waited = System.currentTimeMillis() - task.queuedAt;
+        statsOf(task.priority).add(waited);
+        Log.d(TAG, "start: " + task.priority + " call waited " + waited + "ms, " + statsOf(task.priority));
+        running.add(task);
+        inFlight++;
+
+        final Call<R> call = task.call;
+        call.enqueue(new Callback<R>() {
+            @Override
+            public void onResponse(@NonNull Call<R> call, @NonNull Response<R> response) {
+                if(finish(task, call)){
+                    task.callback.onResponse(call, response);
+                }
+                else{
+                    // the response of a preempted call, the body could still hold the connection
+                    close(response.body());
+                }
+            }
+
+            @Override
+            public void onFailure(@NonNull Call<R> call, @NonNull Throwable t) {
+                if(finish(task, call)){
+                    task.callback.onFailure(call, t);
+                }
+            }
+        });
+    }
+
+    // false if the call was cancelled or preempted since
+    private boolean finish(Task<?> task, Call<?> call){
+        synchronized (this){
+            inFlight--;
+            boolean isCurrent = !task.isCancelled && task.call == call;
+            if(isCurrent){
+                running.remove(task);
+            }
+            // either way OkHttp has one call less
+            promote();
+            return isCurrent;
+        }
+    }
+
+    private void cancel(Task<?> task){
+        synchronized (this){
+            if(task.isCancelled){
+                return;
+            }
+            task.isCancelled = true;
+            if(!queueOf(task.priority).remove(task) && running.remove(task)){
+                promote();
+            }
+        }
+        task.call.cancel();
+    }
+
+    private int countRunning(Priority priority){
+        int count = 0;
+        for(Task<?> task: running){
+            if(task.priority == priority){
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Deque<Task<?>> queueOf(Priority priority){
+        return priority == Priority.INTERACTIVE ? interactiveQueue : backgroundQueue;
+    }
+
+    private QueueStats statsOf(Priority priority){
+        return priority == Priority.INTERACTIVE ? interactiveStats : backgroundStats;
+    }
+
+    private static void close(Object body){
+        if(body instanceof Closeable){
+            try {
+                ((Closeable) body).close();
+            } catch (IOException e) {
+                // only releasing it
+            }
+        }
+    }
+
+    private class Task<R> implements Cancellable {
+
+        final Priority priority;
+        final Callback<R> callback;
+
+        // guarded by the scheduler
+        Call<R> call;
+        long queuedAt = System.currentTimeMillis();
+        boolean isCancelled;
+
+        Task(Call<R> call, Priority priority, Callback<R> callback) {
+            this.call = call;
+            this.priority = priority;
+            this.callback = callback;
+        }
+
+        // a call can only be executed once, so it's replaced with a copy
+        void requeue(){
+            Call<R> preempted = call;
+            call = preempted.clone();
+            queuedAt = System.currentTimeMillis();
+            preempted.cancel();
+        }
+
+        @Override
+        public void cancel() {
+            RequestScheduler.this.cancel(this);
+        }
+    }
+
+    /**
+     * How long calls of a priority waited to be sent. A preempted call counts again when it's resent.
+     */
+    public static class QueueStats {
+
+        private int count;
+        private long totalWaitMillis;
+        private long maxWaitMillis;
+
+        QueueStats() {
+        }
+
+        QueueStats(QueueStats stats) {
+            this.count = stats.count;
+            this.totalWaitMillis = stats.totalWaitMillis;
+            this.maxWaitMillis = stats.maxWaitMillis;
+        }
+
+        void add(long waitMillis){
+            count++;
+            totalWaitMillis += waitMillis;
+            maxWaitMillis = Math.max(maxWaitMillis, waitMillis);
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getAverageWaitMillis(){
+            return count == 0 ? 0 : totalWaitMillis / count;
+        }
+
+        public long getMaxWaitMillis() {
+            return maxWaitMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "QueueStats{" +
+                    "count=" + count +
+                    ", averageWait=" + getAverageWaitMillis() +
+                    "ms, maxWait=" + maxWaitMillis +
+                    "ms}";
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.codingwithmitch.foodrecipes.requests;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Random;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Retries GET requests that fail with an IOException (including timeouts) or a 5xx / 408 / 429 response.
+ * Only GETs are retried since they're idempotent.
+ *
+ * Waits between attempts with exponential backoff and full jitter: a random delay between 0 and
+ * min(maxDelay, baseDelay * 2^attempt), so clients that failed together don't retry together.
+ * The wait stops early once the call is cancelled, so a call RequestScheduler preempted gives back its
+ * network thread without sleeping out the backoff first.
+ */
+public class RetryInterceptor implements Interceptor {
+
+    private static final String TAG = "RetryInterceptor";
+
+    // how often a backoff checks whether the call was cancelled
+    private static final long CANCEL_CHECK_MILLIS = 50;
+
+    // swapped out in tests so they don't have to wait
+    public interface Sleeper {
+        void sleep(long millis) throws InterruptedException;
+    }
+
+    private static final Sleeper THREAD_SLEEPER = new Sleeper() {
+        @Override
+        public void sleep(long millis) throws InterruptedException {
+            Thread.sleep(millis);
+        }
+    };
+
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final Sleeper sleeper;
+    private final Random random;
+
+    public RetryInterceptor(int maxRetries, long baseDelayMillis, long maxDelayMillis) {
+        this(maxRetries, baseDelayMillis, maxDelayMillis, THREAD_SLEEPER, new Random());
+    }
+
+    public RetryInterceptor(int maxRetries, long baseDelayMillis, long maxDelayMillis, Sleeper sleeper, Random random) {
+        this.maxRetries = maxRetries;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.sleeper = sleeper;
+        this.random = random;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if(!request.method().equals("GET")){
+            return chain.proceed(request);
+        }
+
+        for(int attempt = 0; ; attempt++){
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                if(attempt >= maxRetries || chain.call().isCanceled()){
+                    throw e;
+                }
+                Log.d(TAG, "intercept: attempt " + (attempt + 1) + " failed: " + e.getMessage());
+                backOff(chain, attempt);
+                continue;
+            }
+
+            if(!isRetryable(response) || attempt >= maxRetries || chain.call().isCanceled()){
+                return response;
+            }
+            Log.d(TAG, "intercept: attempt " + (attempt + 1) + " failed: HTTP " + response.code());
+            response.close();
+            backOff(chain, attempt);
+        }
+    }
+
+    private static boolean isRetryable(Response response){
+        int code = response.code();
+        return code >= 500 || code == 408 || code == 429;
+    }
+
+    private void backOff(Chain chain, int attempt) throws IOException {
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt, 30));
+        long delay = (long) (random.nextDouble() * ceiling);
+        try {
+            // okhttp's cancel doesn't interrupt the thread, so the sleep is cut into slices
+            while(delay > 0){
+                if(chain.call().isCanceled()){
+                    throw new IOException("Canceled");
+                }
+                long slice = Math.min(delay, CANCEL_CHECK_MILLIS);
+                sleeper.sleep(slice);
+                delay -= slice;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while backing off");
+        }
+    }
+}
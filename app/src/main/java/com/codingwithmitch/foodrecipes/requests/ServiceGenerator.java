@@ -1,49 +1,132 @@
 package com.codingwithmitch.foodrecipes.requests;
 
+import android.content.Context;
+
+import com.codingwithmitch.foodrecipes.AppExecutors;
 import com.codingwithmitch.foodrecipes.util.Constants;
+import com.codingwithmitch.foodrecipes.util.JsonAdapters;
 import com.codingwithmitch.foodrecipes.util.LiveDataCallAdapter;
 import com.codingwithmitch.foodrecipes.util.LiveDataCallAdapterFactory;
+import com.google.gson.Gson;
 
+import java.io.File;
 import java.util.concurrent.TimeUnit;
 
+import okhttp3.Cache;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
+import static com.codingwithmitch.foodrecipes.util.Constants.API_MAX_CALLS;
+import static com.codingwithmitch.foodrecipes.util.Constants.CIRCUIT_BREAKER_FAILURE_THRESHOLD;
+import static com.codingwithmitch.foodrecipes.util.Constants.CIRCUIT_BREAKER_OPEN_TIME;
 import static com.codingwithmitch.foodrecipes.util.Constants.CONNECTION_TIMEOUT;
+import static com.codingwithmitch.foodrecipes.util.Constants.HTTP_CACHE_MAX_AGE;
+import static com.codingwithmitch.foodrecipes.util.Constants.HTTP_CACHE_SIZE;
+import static com.codingwithmitch.foodrecipes.util.Constants.LATENCY_MIN_SAMPLES;
+import static com.codingwithmitch.foodrecipes.util.Constants.LATENCY_WINDOW_SIZE;
+import static com.codingwithmitch.foodrecipes.util.Constants.MAX_CONNECTION_TIMEOUT;
+import static com.codingwithmitch.foodrecipes.util.Constants.MAX_READ_TIMEOUT;
+import static com.codingwithmitch.foodrecipes.util.Constants.MIN_CONNECTION_TIMEOUT;
+import static com.codingwithmitch.foodrecipes.util.Constants.MIN_READ_TIMEOUT;
 import static com.codingwithmitch.foodrecipes.util.Constants.READ_TIMEOUT;
+import static com.codingwithmitch.foodrecipes.util.Constants.RETRY_BASE_DELAY;
+import static com.codingwithmitch.foodrecipes.util.Constants.RETRY_MAX_DELAY;
+import static com.codingwithmitch.foodrecipes.util.Constants.RETRY_MAX_RETRIES;
+import static com.codingwithmitch.foodrecipes.util.Constants.TIMEOUT_MULTIPLIER;
+import static com.codingwithmitch.foodrecipes.util.Constants.TIMEOUT_PERCENTILE;
 import static com.codingwithmitch.foodrecipes.util.Constants.WRITE_TIMEOUT;
 
 public class ServiceGenerator {
 
-    private static OkHttpClient client = new OkHttpClient.Builder()
+    private static final String HTTP_CACHE_DIRECTORY = "http_cache";
+
+    private static HttpCacheStats cacheStats = new HttpCacheStats();
+
+    private static LatencyTracker latencyTracker = new LatencyTracker(LATENCY_WINDOW_SIZE, LATENCY_MIN_SAMPLES);
+
+    private static RecipeApi recipeApi;
+
+    /**
+     * Builds the api with a response cache in the app's cache directory.
+     * Must be called before getRecipeApi, RecipeRepository does it.
+     */
+    public static synchronized void init(Context context){
+        if(recipeApi != null){
+            return;
+        }
+
+        Dispatcher dispatcher = new Dispatcher(AppExecutors.getInstance().networkIO());
+        dispatcher.setMaxRequests(API_MAX_CALLS);
+        dispatcher.setMaxRequestsPerHost(API_MAX_CALLS);
+
+        OkHttpClient client = new OkHttpClient.Builder()
+
+                // calls are only handed to OkHttp when RequestScheduler has a slot for them, the extra room is for
+                // preempted calls that haven't noticed yet, so they don't hold up the ones that replaced them
+                .dispatcher(dispatcher)
+
+                // establish connection to server
+                .connectTimeout(CONNECTION_TIMEOUT, TimeUnit.SECONDS)
+
+                // time between each byte read from the server
+                .readTimeout(READ_TIMEOUT, TimeUnit.SECONDS)
 
-            // establish connection to server
-            .connectTimeout(CONNECTION_TIMEOUT, TimeUnit.SECONDS)
+                // time between each byte sent to server
+                .writeTimeout(WRITE_TIMEOUT, TimeUnit.SECONDS)
 
-            // time between each byte read from the server
-            .readTimeout(READ_TIMEOUT, TimeUnit.SECONDS)
+                // retries are done by RetryInterceptor
+                .retryOnConnectionFailure(false)
 
-            // time between each byte sent to server
-            .writeTimeout(WRITE_TIMEOUT, TimeUnit.SECONDS)
+                // responses are revalidated with ETag / If-Modified-Since once stale
+                .cache(new Cache(new File(context.getApplicationContext().getCacheDir(), HTTP_CACHE_DIRECTORY), HTTP_CACHE_SIZE))
 
-            .retryOnConnectionFailure(false)
+                // for responses that come without caching headers
+                .addNetworkInterceptor(new CacheControlInterceptor(HTTP_CACHE_MAX_AGE))
 
-            .build();
+                .addInterceptor(cacheStats)
 
+                // fails fast to cached responses while the backend is down, counts a request once its retries are done
+                .addInterceptor(new CircuitBreakerInterceptor(CIRCUIT_BREAKER_FAILURE_THRESHOLD, CIRCUIT_BREAKER_OPEN_TIME))
 
-    private static Retrofit.Builder retrofitBuilder =
-            new Retrofit.Builder()
-                    .baseUrl(Constants.BASE_URL)
-                    .client(client)
-                    .addCallAdapterFactory(new LiveDataCallAdapterFactory())
-                    .addConverterFactory(GsonConverterFactory.create());
+                .addInterceptor(new RetryInterceptor(RETRY_MAX_RETRIES, RETRY_BASE_DELAY, RETRY_MAX_DELAY))
 
-    private static Retrofit retrofit = retrofitBuilder.build();
+                // after the retries so each attempt gets timeouts from the latest latencies
+                .addInterceptor(new AdaptiveTimeoutInterceptor(latencyTracker, TIMEOUT_PERCENTILE, TIMEOUT_MULTIPLIER,
+                        MIN_CONNECTION_TIMEOUT, MAX_CONNECTION_TIMEOUT, MIN_READ_TIMEOUT, MAX_READ_TIMEOUT))
 
-    private static RecipeApi recipeApi = retrofit.create(RecipeApi.class);
+                .eventListenerFactory(latencyTracker)
+
+                .build();
+
+        // reads the models with hand written adapters instead of reflection
+        Gson gson = JsonAdapters.getGson();
+
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(Constants.BASE_URL)
+                .client(client)
+                .addCallAdapterFactory(new LiveDataCallAdapterFactory())
+                // search results are streamed into the database
+                .addConverterFactory(RecipeSearchResponseConverterFactory.create(gson))
+                .addConverterFactory(GsonConverterFactory.create(gson))
+                .build();
+
+        recipeApi = retrofit.create(RecipeApi.class);
+    }
 
     public static RecipeApi getRecipeApi(){
+        if(recipeApi == null){
+            throw new IllegalStateException("ServiceGenerator.init must be called first");
+        }
         return recipeApi;
     }
+
+    public static HttpCacheStats getCacheStats(){
+        return cacheStats;
+    }
+
+    public static LatencyTracker getLatencyTracker(){
+        return latencyTracker;
+    }
 }
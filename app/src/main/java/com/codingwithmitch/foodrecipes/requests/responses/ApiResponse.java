@@ -1,5 +1,6 @@
 package com.codingwithmitch.foodrecipes.requests.responses;
 
+import android.support.annotation.Nullable;
 
 import java.io.IOException;
 
@@ -18,17 +19,32 @@ public class ApiResponse<T> {
         return new ApiErrorResponse<>(error.getMessage().equals("") ? error.getMessage() : "Unknown error\nCheck network connection");
     }
 
+    /**
+     * For a response that came in but couldn't be saved, see RequestCoalescer.
+     * @param error what the save threw, null if it didn't say
+     */
+    public static <T> ApiResponse<T> saveFailed(@Nullable Throwable error){
+        String errorMsg = "Couldn't save the response";
+        if(error != null && error.getMessage() != null){
+            errorMsg += ": " + error.getMessage();
+        }
+        return new ApiResponse<T>().new ApiErrorResponse<T>(errorMsg);
+    }
+
     public ApiResponse<T> create(Response<T> response){
 
         if(response.isSuccessful()){
             T body = response.body();
 
             if(body instanceof RecipeSearchResponse){
+                // the recipes may still be streaming from the response body, which has to be released if they won't be saved
                 if(!CheckRecipeApiKey.isRecipeApiKeyValid((RecipeSearchResponse)body)){
+                    ((RecipeSearchResponse) body).close();
                     String errorMsg = "Api key is invalid or expired.";
                     return new ApiErrorResponse<>(errorMsg);
                 }
                 if(((RecipeSearchResponse) body).getCount() == 0){
+                    ((RecipeSearchResponse) body).close();
                     // query is exhausted
                     return new ApiErrorResponse<>(QUERY_EXHAUSTED);
                 }
@@ -45,7 +61,7 @@ public class ApiResponse<T> {
                 return new ApiEmptyResponse<>();
             }
             else{
-                return new ApiSuccessResponse<>(body);
+                return new ApiSuccessResponse<>(body, response.raw().receivedResponseAtMillis());
             }
         }
         else{
@@ -67,15 +83,23 @@ public class ApiResponse<T> {
     public class ApiSuccessResponse<T> extends ApiResponse<T> {
 
         private T body;
+        private long receivedAt;
 
-        ApiSuccessResponse(T body) {
+        ApiSuccessResponse(T body, long receivedAt) {
             this.body = body;
+            this.receivedAt = receivedAt;
         }
 
         public T getBody() {
             return body;
         }
 
+        // when the body came from the server, in milliseconds. Earlier than the call if
+        // CircuitBreakerInterceptor answered it from the http cache while the backend is down
+        public long getReceivedAt() {
+            return receivedAt;
+        }
+
     }
 
     /**
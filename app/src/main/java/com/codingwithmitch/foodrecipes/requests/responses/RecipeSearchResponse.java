@@ -7,9 +7,10 @@ import com.codingwithmitch.foodrecipes.models.Recipe;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 
+import java.io.Closeable;
 import java.util.List;
 
-public class RecipeSearchResponse {
+public class RecipeSearchResponse implements Closeable {
 
     @SerializedName("count")
     @Expose()
@@ -23,6 +24,24 @@ public class RecipeSearchResponse {
     @Expose()
     private String error;
 
+    // set instead of recipes when the response is streamed, see RecipeSearchResponseConverterFactory
+    private transient RecipeStream recipeStream;
+
+    public RecipeSearchResponse() {
+    }
+
+    public RecipeSearchResponse(int count, List<Recipe> recipes, String error) {
+        this.count = count;
+        this.recipes = recipes;
+        this.error = error;
+    }
+
+    public RecipeSearchResponse(int count, String error, RecipeStream recipeStream) {
+        this.count = count;
+        this.error = error;
+        this.recipeStream = recipeStream;
+    }
+
     public String getError() {
         return error;
     }
@@ -36,11 +55,30 @@ public class RecipeSearchResponse {
         return recipes;
     }
 
+    /**
+     * The recipes, whether they were streamed or parsed up front. Null if the response had none.
+     */
+    @Nullable
+    public RecipeStream getRecipeStream() {
+        if(recipeStream == null && recipes != null){
+            recipeStream = new RecipeStream(recipes);
+        }
+        return recipeStream;
+    }
+
+    // releases the response body if the recipes won't be read
+    @Override
+    public void close(){
+        if(recipeStream != null){
+            recipeStream.close();
+        }
+    }
+
     @Override
     public String toString() {
         return "RecipeSearchResponse{" +
                 "count=" + count +
-                ", recipes=" + recipes +
+                ", recipes=" + (recipeStream != null ? "(streamed)" : recipes) +
                 ", error='" + error + '\'' +
                 '}';
     }
@@ -0,0 +1,221 @@
+package com.codingwithmitch.foodrecipes.requests.responses;
+
+import android.support.annotation.Nullable;
+
+import com.codingwithmitch.foodrecipes.models.Recipe;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The recipes of a search response, read one at a time straight off the response body so a whole page
+ * never has to be held in memory. Can only be read once, and must be closed, which releases the connection.
+ */
+public class RecipeStream implements Closeable {
+
+    // streaming
+    private final JsonReader reader;
+    private final TypeAdapter<Recipe> adapter;
+
+    // already parsed
+    private final Iterator<Recipe> recipes;
+
+    // parsed ahead on another thread, see readAhead
+    private final RecipeStream source;
+    private final BlockingQueue<Object> parsed;
+    private final long timeoutMillis;
+
+    // set by the parsing thread when it stopped without queueing END or an exception
+    private volatile RuntimeException parseFailure;
+
+    // read by the parsing thread of a read ahead stream
+    private volatile boolean isClosed;
+
+    // ends the parsed queue
+    private static final Object END = new Object();
+
+    /**
+     * @param reader positioned inside the recipes array, after beginArray
+     */
+    public RecipeStream(JsonReader reader, TypeAdapter<Recipe> adapter) {
+        this.reader = reader;
+        this.adapter = adapter;
+        this.recipes = null;
+        this.source = null;
+        this.parsed = null;
+        this.timeoutMillis = 0;
+    }
+
+    public RecipeStream(List<Recipe> recipes) {
+        this.reader = null;
+        this.adapter = null;
+        this.recipes = recipes.iterator();
+        this.source = null;
+        this.parsed = null;
+        this.timeoutMillis = 0;
+    }
+
+    private RecipeStream(RecipeStream source, int capacity, long timeoutMillis) {
+        this.reader = null;
+        this.adapter = null;
+        this.recipes = null;
+        this.source = source;
+        this.parsed = new ArrayBlockingQueue<>(capacity);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Parses the recipes on the executor, at most capacity ahead of whoever reads them, so reading the
+     * response and writing it to the database overlap. The returned stream replaces this one.
+     * Parsing reads the response body, so the executor should be one meant for blocking network reads.
+     * If the executor won't take it this stream is returned as it is.
+     * @param timeoutMillis how long next waits for a recipe before it gives up with a JsonIOException,
+     *                      longer than a read of the body can take before it times out
+     */
+    public RecipeStream readAhead(Executor executor, int capacity, long timeoutMillis){
+        if(reader == null){
+            // nothing left to parse
+            return this;
+        }
+        final RecipeStream readAhead = new RecipeStream(this, capacity, timeoutMillis);
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    readAhead.parseSource();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // read on the caller's thread instead
+            return this;
+        }
+        return readAhead;
+    }
+
+    // the source is only touched by the parsing thread, closing this stream just stops it
+    private void parseSource(){
+        boolean isEnded = false;
+        try {
+            Object item;
+            do{
+                if(isClosed){
+                    return;
+                }
+                try {
+                    item = source.next();
+                    if(item == null){
+                        item = END;
+                    }
+                } catch (RuntimeException e) {
+                    // thrown again by next, on the reading thread
+                    item = e;
+                }
+                // the reader may have stopped reading and closed it
+                while(!parsed.offer(item, 100, TimeUnit.MILLISECONDS)){
+                    if(isClosed){
+                        return;
+                    }
+                }
+                isEnded = !(item instanceof Recipe);
+            }while(!isEnded);
+        } catch (InterruptedException e) {
+            // stops parsing
+        } finally {
+            source.close();
+            if(!isEnded){
+                // stopped by an Error or an interrupt, the reader would wait for the rest otherwise
+                parseFailure = new JsonIOException("stopped reading the response body");
+                parsed.offer(parseFailure);
+            }
+        }
+    }
+
+    /**
+     * @return the next recipe, or null once they've all been read
+     * @throws JsonIOException if the body can't be read, JsonSyntaxException if it isn't a recipe array
+     */
+    @Nullable
+    public Recipe next(){
+        if(isClosed){
+            return null;
+        }
+        if(recipes != null){
+            return recipes.hasNext() ? recipes.next() : null;
+        }
+        if(parsed != null){
+            return takeParsed();
+        }
+        try {
+            if(reader.peek() == JsonToken.END_ARRAY){
+                close();
+                return null;
+            }
+            return adapter.read(reader);
+        } catch (IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    @Nullable
+    private Recipe takeParsed(){
+        Object item;
+        try {
+            long waitedMillis = 0;
+            while((item = parsed.poll(100, TimeUnit.MILLISECONDS)) == null){
+                // the failure couldn't be queued if the queue was full, the reader has emptied it since
+                if(parseFailure != null){
+                    item = parseFailure;
+                    break;
+                }
+                waitedMillis += 100;
+                if(waitedMillis >= timeoutMillis){
+                    close();
+                    throw new JsonIOException("timed out waiting for the response body");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new JsonIOException(e);
+        }
+        if(item instanceof RuntimeException){
+            close();
+            throw (RuntimeException) item;
+        }
+        if(item == END){
+            close();
+            return null;
+        }
+        return (Recipe) item;
+    }
+
+    // the rest of the body isn't needed
+    @Override
+    public void close() {
+        if(isClosed){
+            return;
+        }
+        isClosed = true;
+        if(reader != null){
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // nothing left to read anyway
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.codingwithmitch.foodrecipes.util;
+
+import android.support.annotation.MainThread;
+
+/**
+ * A LiveData of cached data that knows which RecipeInvalidationTracker version its value was read at,
+ * so NetworkBoundResource can tell whether it already shows a write (see CacheWriteResult.getVersion).
+ */
+public interface CacheVersioned {
+
+    /**
+     * @return the version of the cache the current value was read at, writes notified up to it are in
+     * the value. 0 before there's a value
+     */
+    @MainThread
+    long getValueVersion();
+}
@@ -0,0 +1,58 @@
+package com.codingwithmitch.foodrecipes.util;
+
+/**
+ * How many rows a save to the cache actually changed, and how many already held the same content.
+ * Returned by NetworkBoundResource.saveCallResult so it can skip re-reading the cache when nothing changed.
+ */
+public class CacheWriteResult {
+
+    public static final CacheWriteResult NONE = new CacheWriteResult(0, 0);
+
+    private final int changed;
+    private final int unchanged;
+    private final long version;
+
+    public CacheWriteResult(int changed, int unchanged) {
+        this(changed, unchanged, 0);
+    }
+
+    private CacheWriteResult(int changed, int unchanged, long version) {
+        this.changed = changed;
+        this.unchanged = unchanged;
+        this.version = version;
+    }
+
+    // the same result, once the write was notified at this version
+    public CacheWriteResult withVersion(long version){
+        return new CacheWriteResult(changed, unchanged, version);
+    }
+
+    public int getChanged() {
+        return changed;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    /**
+     * The RecipeInvalidationTracker version the write was notified at, 0 if it wasn't.
+     * A query whose value was read at this version or a later one (see CacheVersioned) already shows it.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean hasChanges(){
+        return changed > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheWriteResult{" +
+                "changed=" + changed +
+                ", unchanged=" + unchanged +
+                ", version=" + version +
+                '}';
+    }
+}
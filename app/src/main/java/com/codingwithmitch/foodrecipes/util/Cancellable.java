@@ -0,0 +1,14 @@
+package com.codingwithmitch.foodrecipes.util;
+
+import android.support.annotation.MainThread;
+
+/**
+ * Implemented by the LiveData returned for api calls and NetworkBoundResources, so whoever
+ * observes them can stop the work behind them once the result isn't wanted anymore.
+ */
+public interface Cancellable {
+
+    // nothing is emitted afterwards, does nothing if it already finished
+    @MainThread
+    void cancel();
+}
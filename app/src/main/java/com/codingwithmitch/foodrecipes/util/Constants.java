@@ -13,8 +13,54 @@ public class Constants {
     public static final int READ_TIMEOUT = 2; // 2 seconds
     public static final int WRITE_TIMEOUT = 2; // 2 seconds
 
+    // per call timeouts from recent latencies, see AdaptiveTimeoutInterceptor. The timeouts above are used until there are enough
+    public static final int LATENCY_WINDOW_SIZE = 50; // latest calls per endpoint
+    public static final int LATENCY_MIN_SAMPLES = 5;
+    public static final double TIMEOUT_PERCENTILE = 0.95;
+    public static final double TIMEOUT_MULTIPLIER = 3;
+    public static final long MIN_CONNECTION_TIMEOUT = 2000; // milliseconds
+    public static final long MAX_CONNECTION_TIMEOUT = 15 * 1000; // milliseconds
+    public static final long MIN_READ_TIMEOUT = 1000; // milliseconds
+    public static final long MAX_READ_TIMEOUT = 10 * 1000; // milliseconds
+
+    // retries of failed GET requests, with exponential backoff and jitter
+    public static final int RETRY_MAX_RETRIES = 2;
+    public static final long RETRY_BASE_DELAY = 250; // milliseconds
+    public static final long RETRY_MAX_DELAY = 2000; // milliseconds
+
+    // stop calling the api after this many failed requests in a row, for CIRCUIT_BREAKER_OPEN_TIME
+    public static final int CIRCUIT_BREAKER_FAILURE_THRESHOLD = 5;
+    public static final long CIRCUIT_BREAKER_OPEN_TIME = 30 * 1000; // 30 seconds (in milliseconds)
+
+    // api calls sent at once, see RequestScheduler. Next pages only get some of them, details and first pages all
+    public static final int API_MAX_REQUESTS = 5;
+    public static final int API_MAX_BACKGROUND_REQUESTS = 2;
+    // calls OkHttp may have at once: the ones above and preempted or cancelled ones still winding down
+    public static final int API_MAX_CALLS = 2 * API_MAX_REQUESTS;
+
+    public static final long HTTP_CACHE_SIZE = 10 * 1024 * 1024; // 10 MB
+    public static final int HTTP_CACHE_MAX_AGE = 60 * 60; // 1 hour (in seconds), when the server doesn't say. Revalidated anyway, see RecipeApi
+
+    public static final int RECIPES_PER_PAGE = 30; // page size of the search api
+    public static final int SAVE_BATCH_SIZE = 10; // recipes parsed from a search response before they're written
+
     public static final int RECIPE_REFRESH_TIME = 60 * 60 * 24 * 30; // 30 days (in seconds)
 
+    // threads reading the database at once, each holds one of the connections sqlite opens for readers
+    public static final int DATABASE_READER_THREADS = 3;
+
+    // see AppExecutors. One network thread per api call OkHttp may have at once, and one for the body the
+    // disk writer is saving (see RecipeStream.readAhead)
+    public static final int CPU_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    public static final int NETWORK_THREADS = API_MAX_CALLS + 1;
+
+    public static final long SEARCH_RESULTS_TTL = 60 * 60 * 1000; // 1 hour (in milliseconds)
+
+    // cache limits, the least recently used recipes are evicted past either one (0 = no limit)
+    public static final int CACHE_MAX_RECIPES = 1000;
+    public static final long CACHE_MAX_BYTES = 2 * 1024 * 1024; // approximate, see RecipeDao.estimateCacheBytes
+    public static final int CACHE_EVICTION_BATCH_SIZE = 100; // recipes deleted per transaction
+
 
     public static final String[] DEFAULT_SEARCH_CATEGORIES =
             {"Barbeque", "Breakfast", "Chicken", "Beef", "Brunch", "Dinner", "Wine", "Italian"};
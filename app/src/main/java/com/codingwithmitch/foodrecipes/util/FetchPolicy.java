@@ -0,0 +1,82 @@
+package com.codingwithmitch.foodrecipes.util;
+
+/**
+ * How a NetworkBoundResource picks between the cache and the network.
+ *
+ * The age of cached data is the time since it was fetched (NetworkBoundResource.getFetchedAt).
+ * Data younger than ttl is fresh and isn't fetched again by the cache first policies.
+ * Data older than maxStale isn't shown at all, not even while a fetch runs or when it fails.
+ * Data that was never fetched (nothing in the database, or getFetchedAt 0) has no age and is neither
+ * fresh nor usable, whatever the ttl and maxStale.
+ */
+public class FetchPolicy {
+
+    public enum Strategy {
+
+        // fresh data is used as is, anything else waits for the network
+        CACHE_FIRST,
+
+        // always fetches, the cache is only shown if the fetch fails
+        NETWORK_FIRST,
+
+        // fresh data is used as is, stale data is shown right away while it's refreshed
+        STALE_WHILE_REVALIDATE,
+
+        // never fetches
+        CACHE_ONLY,
+
+        // always fetches and never shows what was cached before
+        NETWORK_ONLY
+    }
+
+    public static final long FOREVER = Long.MAX_VALUE;
+
+    public static FetchPolicy cacheFirst(long ttl, long maxStale){
+        return new FetchPolicy(Strategy.CACHE_FIRST, ttl, maxStale);
+    }
+
+    public static FetchPolicy networkFirst(long maxStale){
+        return new FetchPolicy(Strategy.NETWORK_FIRST, 0, maxStale);
+    }
+
+    public static FetchPolicy staleWhileRevalidate(long ttl, long maxStale){
+        return new FetchPolicy(Strategy.STALE_WHILE_REVALIDATE, ttl, maxStale);
+    }
+
+    public static FetchPolicy cacheOnly(long maxStale){
+        return new FetchPolicy(Strategy.CACHE_ONLY, FOREVER, maxStale);
+    }
+
+    public static FetchPolicy networkOnly(){
+        return new FetchPolicy(Strategy.NETWORK_ONLY, 0, 0);
+    }
+
+    public final Strategy strategy;
+
+    // in milliseconds
+    public final long ttl;
+    public final long maxStale;
+
+    private FetchPolicy(Strategy strategy, long ttl, long maxStale) {
+        this.strategy = strategy;
+        this.ttl = ttl;
+        this.maxStale = maxStale;
+    }
+
+    public boolean isFresh(long age){
+        return age < ttl;
+    }
+
+    public boolean isUsable(long age){
+        return strategy != Strategy.NETWORK_ONLY && age <= maxStale;
+    }
+
+    @Override
+    public String toString() {
+        return "FetchPolicy{" +
+                "strategy=" + strategy +
+                ", ttl=" + ttl +
+                ", maxStale=" + maxStale +
+                '}';
+    }
+}
@@ -0,0 +1,80 @@
+package com.codingwithmitch.foodrecipes.util;
+
+import android.arch.lifecycle.LiveData;
+import android.arch.lifecycle.MediatorLiveData;
+import android.arch.lifecycle.Observer;
+import android.support.annotation.MainThread;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Passes on the resources of source at most once a frame, on the next vsync, so a burst of emissions
+ * (loading, success, then the query re-running) rebinds the list once instead of once per emission.
+ *
+ * Of the resources emitted within a frame only the latest is delivered, except errors: their message
+ * is shown once (a toast, the query exhausted row), so an error is always delivered, followed by
+ * the latest resource after it.
+ */
+public class FrameCoalescingLiveData<T> extends MediatorLiveData<Resource<T>> {
+
+    private static final String TAG = "FrameCoalescing";
+
+    // main thread only, across every instance
+    private static long totalCollapsedCount;
+
+    private final List<Resource<T>> pending = new ArrayList<>();
+    private boolean isFrameScheduled;
+    private long collapsedCount;
+
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            isFrameScheduled = false;
+            List<Resource<T>> resources = new ArrayList<>(pending);
+            pending.clear();
+            for(Resource<T> resource: resources){
+                setValue(resource);
+            }
+        }
+    };
+
+    @MainThread
+    public FrameCoalescingLiveData(LiveData<Resource<T>> source) {
+        addSource(source, new Observer<Resource<T>>() {
+            @Override
+            public void onChanged(@Nullable Resource<T> resource) {
+                dispatch(resource);
+            }
+        });
+    }
+
+    private void dispatch(Resource<T> resource){
+        int last = pending.size() - 1;
+        if(last >= 0 && (pending.get(last) == null || pending.get(last).status != Resource.Status.ERROR)){
+            pending.set(last, resource);
+            collapsedCount++;
+            totalCollapsedCount++;
+            Log.d(TAG, "dispatch: collapsed " + collapsedCount + " emissions, " + totalCollapsedCount + " in total.");
+        }
+        else{
+            pending.add(resource);
+        }
+        if(!isFrameScheduled){
+            isFrameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(frameCallback);
+        }
+    }
+
+    // emissions that were replaced by a later one in the same frame
+    public long getCollapsedCount(){
+        return collapsedCount;
+    }
+
+    public static long getTotalCollapsedCount(){
+        return totalCollapsedCount;
+    }
+}
@@ -0,0 +1,212 @@
+package com.codingwithmitch.foodrecipes.util;
+
+import com.codingwithmitch.foodrecipes.models.Recipe;
+import com.codingwithmitch.foodrecipes.requests.responses.RecipeResponse;
+import com.codingwithmitch.foodrecipes.requests.responses.RecipeSearchResponse;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand written TypeAdapters for the api models, so Gson never falls back to reflection for them.
+ * The reflective adapters are slow to build on first use and box every field they read.
+ *
+ * One Gson with these registered is shared by ServiceGenerator and Converters.
+ * Field names match the json the api sends. Unknown fields are skipped and nulls leave the default.
+ */
+public class JsonAdapters {
+
+    private static Gson gson;
+
+    public static synchronized Gson getGson(){
+        if(gson == null){
+            gson = new GsonBuilder()
+                    .registerTypeAdapter(String[].class, STRING_ARRAY)
+                    .registerTypeAdapter(Recipe.class, RECIPE.nullSafe())
+                    .registerTypeAdapter(RecipeResponse.class, RECIPE_RESPONSE.nullSafe())
+                    .registerTypeAdapter(RecipeSearchResponse.class, RECIPE_SEARCH_RESPONSE.nullSafe())
+                    .create();
+        }
+        return gson;
+    }
+
+    // null safe, so Converters can use it as is
+    public static final TypeAdapter<String[]> STRING_ARRAY = new TypeAdapter<String[]>() {
+
+        @Override
+        public String[] read(JsonReader in) throws IOException {
+            if(in.peek() == JsonToken.NULL){
+                in.nextNull();
+                return null;
+            }
+            List<String> list = new ArrayList<>();
+            in.beginArray();
+            while(in.hasNext()){
+                list.add(nextStringOrNull(in));
+            }
+            in.endArray();
+            return list.toArray(new String[list.size()]);
+        }
+
+        @Override
+        public void write(JsonWriter out, String[] value) throws IOException {
+            if(value == null){
+                out.nullValue();
+                return;
+            }
+            out.beginArray();
+            for(String item: value){
+                out.value(item);
+            }
+            out.endArray();
+        }
+    };
+
+    public static final TypeAdapter<Recipe> RECIPE = new TypeAdapter<Recipe>() {
+
+        @Override
+        public Recipe read(JsonReader in) throws IOException {
+            Recipe recipe = new Recipe();
+            in.beginObject();
+            while(in.hasNext()){
+                String name = in.nextName();
+                if(in.peek() == JsonToken.NULL){
+                    in.nextNull();
+                    continue;
+                }
+                switch (name){
+                    case "recipe_id": recipe.setRecipe_id(in.nextString()); break;
+                    case "title": recipe.setTitle(in.nextString()); break;
+                    case "publisher": recipe.setPublisher(in.nextString()); break;
+                    case "image_url": recipe.setImage_url(in.nextString()); break;
+                    case "social_rank": recipe.setSocial_rank((float) in.nextDouble()); break;
+                    case "ingredients": recipe.setIngredients(STRING_ARRAY.read(in)); break;
+                    case "timestamp": recipe.setTimestamp(in.nextInt()); break;
+                    case "content_hash": recipe.setContent_hash(in.nextLong()); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return recipe;
+        }
+
+        @Override
+        public void write(JsonWriter out, Recipe value) throws IOException {
+            out.beginObject();
+            out.name("recipe_id").value(value.getRecipe_id());
+            out.name("title").value(value.getTitle());
+            out.name("publisher").value(value.getPublisher());
+            out.name("image_url").value(value.getImage_url());
+            // boxed so it's written like the float it is, not widened to a double
+            out.name("social_rank").value((Number) value.getSocial_rank());
+            if(value.getIngredients() != null){
+                STRING_ARRAY.write(out.name("ingredients"), value.getIngredients());
+            }
+            out.name("timestamp").value(value.getTimestamp());
+            out.name("content_hash").value(value.getContent_hash());
+            out.endObject();
+        }
+    };
+
+    public static final TypeAdapter<RecipeResponse> RECIPE_RESPONSE = new TypeAdapter<RecipeResponse>() {
+
+        @Override
+        public RecipeResponse read(JsonReader in) throws IOException {
+            Recipe recipe = null;
+            String error = null;
+            in.beginObject();
+            while(in.hasNext()){
+                String name = in.nextName();
+                if(in.peek() == JsonToken.NULL){
+                    in.nextNull();
+                    continue;
+                }
+                switch (name){
+                    case "recipe": recipe = RECIPE.read(in); break;
+                    case "error": error = in.nextString(); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return new RecipeResponse(recipe, error);
+        }
+
+        @Override
+        public void write(JsonWriter out, RecipeResponse value) throws IOException {
+            out.beginObject();
+            if(value.getRecipe() != null){
+                RECIPE.write(out.name("recipe"), value.getRecipe());
+            }
+            out.name("error").value(value.getError());
+            out.endObject();
+        }
+    };
+
+    /**
+     * Parses the whole response. The api itself goes through RecipeSearchResponseConverterFactory,
+     * which streams the recipes instead.
+     */
+    public static final TypeAdapter<RecipeSearchResponse> RECIPE_SEARCH_RESPONSE = new TypeAdapter<RecipeSearchResponse>() {
+
+        @Override
+        public RecipeSearchResponse read(JsonReader in) throws IOException {
+            int count = 0;
+            List<Recipe> recipes = null;
+            String error = null;
+            in.beginObject();
+            while(in.hasNext()){
+                String name = in.nextName();
+                if(in.peek() == JsonToken.NULL){
+                    in.nextNull();
+                    continue;
+                }
+                switch (name){
+                    case "count": count = in.nextInt(); break;
+                    case "error": error = in.nextString(); break;
+                    case "recipes":{
+                        recipes = new ArrayList<>();
+                        in.beginArray();
+                        while(in.hasNext()){
+                            recipes.add(RECIPE.read(in));
+                        }
+                        in.endArray();
+                        break;
+                    }
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return new RecipeSearchResponse(count, recipes, error);
+        }
+
+        @Override
+        public void write(JsonWriter out, RecipeSearchResponse value) throws IOException {
+            out.beginObject();
+            out.name("count").value(value.getCount());
+            if(value.getRecipes() != null){
+                out.name("recipes").beginArray();
+                for(Recipe recipe: value.getRecipes()){
+                    RECIPE.write(out, recipe);
+                }
+                out.endArray();
+            }
+            out.name("error").value(value.getError());
+            out.endObject();
+        }
+    };
+
+    private static String nextStringOrNull(JsonReader in) throws IOException {
+        if(in.peek() == JsonToken.NULL){
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+}
@@ -2,6 +2,7 @@ package com.codingwithmitch.foodrecipes.util;
 
 import android.arch.lifecycle.LiveData;
 
+import com.codingwithmitch.foodrecipes.requests.RequestScheduler;
 import com.codingwithmitch.foodrecipes.requests.responses.ApiResponse;
 
 import java.io.IOException;
@@ -27,34 +28,55 @@ public class LiveDataCallAdapter<R> implements CallAdapter<R, LiveData<ApiRespon
 
     @Override
     public LiveData<ApiResponse<R>> adapt(final Call<R> call) {
-        return new LiveData<ApiResponse<R>>(){
-            @Override
-            protected void onActive() {
-                super.onActive();
-                final ApiResponse apiResponse = new ApiResponse();
-                if(!call.isExecuted()){
-                    call.enqueue(new Callback<R>() {
-                        @Override
-                        public void onResponse(Call<R> call, Response<R> response) {
-                            postValue(apiResponse.create(response));
-                        }
+        return new CallLiveData<>(call);
+    }
 
-                        @Override
-                        public void onFailure(Call<R> call, Throwable t) {
+    /**
+     * Enqueues the call with RequestScheduler once it's observed. Cancelling it cancels the OkHttp call,
+     * whether it's still waiting to be sent, reading the response or the response body is being read
+     * by whoever got it.
+     */
+    private static class CallLiveData<R> extends LiveData<ApiResponse<R>> implements Cancellable {
+
+        private final Call<R> call;
+
+        // set once it's enqueued
+        private Cancellable scheduledCall;
+
+        CallLiveData(Call<R> call) {
+            this.call = call;
+        }
+
+        @Override
+        protected void onActive() {
+            super.onActive();
+            final ApiResponse apiResponse = new ApiResponse();
+            if(scheduledCall == null && !call.isCanceled()){
+                scheduledCall = RequestScheduler.getInstance().enqueue(call, new Callback<R>() {
+                    @Override
+                    public void onResponse(Call<R> call, Response<R> response) {
+                        postValue(apiResponse.create(response));
+                    }
+
+                    @Override
+                    public void onFailure(Call<R> call, Throwable t) {
+                        if(!call.isCanceled()){
                             postValue(apiResponse.create(t));
                         }
-                    });
-                }
+                    }
+                });
+            }
+        }
 
+        @Override
+        public void cancel() {
+            if(scheduledCall != null){
+                scheduledCall.cancel();
             }
-        };
+            else{
+                call.cancel();
+            }
+        }
     }
 
 }
-
-
-
-
-
-
-
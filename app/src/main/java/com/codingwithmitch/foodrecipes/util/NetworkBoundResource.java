@@ -2,7 +2,6 @@ package com.codingwithmitch.foodrecipes.util;
 
 import android.arch.lifecycle.LiveData;
 import android.arch.lifecycle.MediatorLiveData;
-import android.arch.lifecycle.MutableLiveData;
 import android.arch.lifecycle.Observer;
 import android.support.annotation.MainThread;
 import android.support.annotation.NonNull;
@@ -10,7 +9,6 @@ import android.support.annotation.Nullable;
 import android.support.annotation.WorkerThread;
 import android.util.Log;
 
-import com.codingwithmitch.foodrecipes.AppExecutors;
 import com.codingwithmitch.foodrecipes.requests.responses.ApiResponse;
 
 // CacheObject: Type for the Resource data. (database cache)
@@ -19,11 +17,27 @@ public abstract class NetworkBoundResource<CacheObject, RequestObject> {
 
     private static final String TAG = "NetworkBoundResource";
 
-    private AppExecutors appExecutors;
-    private MediatorLiveData<Resource<CacheObject>> results = new MediatorLiveData<>();
+    public static final String NOT_CACHED = "Not available offline.";
 
-    public NetworkBoundResource(AppExecutors appExecutors) {
-        this.appExecutors = appExecutors;
+    // resources that weren't emitted because they were equal to the last one, main thread only
+    private static long totalSuppressedCount;
+
+    // what the values of dbSource are shown as
+    private enum State {INITIAL, FETCHING, AWAITING_SAVED_DATA, DONE, FAILED}
+
+    private FetchPolicy fetchPolicy;
+    private MediatorLiveData<Resource<CacheObject>> results = new ResultLiveData();
+
+    private LiveData<CacheObject> dbSource;
+    private State state = State.INITIAL;
+    private String errorMessage;
+
+    // the request while it's in flight, see cancel
+    private LiveData<RequestCoalescer.Result<RequestObject>> apiResponse;
+    private boolean isCancelled;
+
+    public NetworkBoundResource(FetchPolicy fetchPolicy) {
+        this.fetchPolicy = fetchPolicy;
         init();
     }
 
@@ -32,58 +46,141 @@ public abstract class NetworkBoundResource<CacheObject, RequestObject> {
         // update LiveData for loading status
         results.setValue((Resource<CacheObject>) Resource.loading(null));
 
-        // observe LiveData source from local db
-        final LiveData<CacheObject> dbSource = loadFromDb();
+        // observe LiveData source from local db, for as long as the resource is observed.
+        // It re-runs by itself when a save changes what it reads, so it's never loaded again
+        dbSource = loadFromDb();
 
         results.addSource(dbSource, new Observer<CacheObject>() {
             @Override
             public void onChanged(@Nullable CacheObject cacheObject) {
+                onLoadedFromDb(cacheObject);
+                switch (state){
+
+                    case INITIAL:{
+                        onCacheLoaded(cacheObject);
+                        break;
+                    }
+
+                    case FETCHING:{
+                        // only stale-while-revalidate shows the cache in the meantime
+                        boolean showCache = fetchPolicy.strategy == FetchPolicy.Strategy.STALE_WHILE_REVALIDATE;
+                        setValue(Resource.loading(showCache ? usable(cacheObject) : null));
+                        break;
+                    }
+
+                    case AWAITING_SAVED_DATA:
+                    case DONE:{
+                        state = State.DONE;
+                        setValue(Resource.success(cacheObject));
+                        break;
+                    }
+
+                    case FAILED:{
+                        setValue(Resource.error(errorMessage, usable(cacheObject)));
+                        break;
+                    }
+                }
+            }
+        });
+    }
+
+    private void onCacheLoaded(@Nullable CacheObject cacheObject){
+        if(isCancelled){
+            return;
+        }
 
-                results.removeSource(dbSource);
+        boolean isCached = isCached(cacheObject);
+        long age = isCached ? ageOf(cacheObject) : -1;
+        Log.d(TAG, "onCacheLoaded: " + (isCached ? "cached data is " + age + "ms old, " : "nothing cached, ") + fetchPolicy);
+        switch (fetchPolicy.strategy){
 
-                if(shouldFetch(cacheObject)){
-                    // get data from the network
-                    fetchFromNetwork(dbSource);
+            case CACHE_ONLY:{
+                if(isCached && fetchPolicy.isUsable(age)){
+                    state = State.DONE;
+                    setValue(Resource.success(cacheObject));
                 }
                 else{
-                    results.addSource(dbSource, new Observer<CacheObject>() {
-                        @Override
-                        public void onChanged(@Nullable CacheObject cacheObject) {
-                            setValue(Resource.success(cacheObject));
-                        }
-                    });
+                    fail(NOT_CACHED);
                 }
+                break;
             }
-        });
+
+            case CACHE_FIRST:
+            case STALE_WHILE_REVALIDATE:{
+                if(isCached && fetchPolicy.isFresh(age)){
+                    state = State.DONE;
+                    setValue(Resource.success(cacheObject));
+                }
+                else{
+                    // get data from the network
+                    fetchFromNetwork();
+                }
+                break;
+            }
+
+            default:{
+                fetchFromNetwork();
+            }
+        }
+    }
+
+    // nothing in the database, or rows that were never fetched themselves (getFetchedAt 0), have no age
+    // to go by and no policy uses them, not even with a maxStale of FOREVER
+    private boolean isCached(@Nullable CacheObject cacheObject){
+        return cacheObject != null && getFetchedAt(cacheObject) > 0;
+    }
+
+    private long ageOf(@NonNull CacheObject cacheObject){
+        return System.currentTimeMillis() - getFetchedAt(cacheObject);
+    }
+
+    // what's cached, if the policy lets it be shown
+    @Nullable
+    private CacheObject usable(@Nullable CacheObject cacheObject){
+        return isCached(cacheObject) && fetchPolicy.isUsable(ageOf(cacheObject)) ? cacheObject : null;
     }
 
     /**
      * 1) observe local db
-     * 2) if <condition/> query the network
-     * 3) stop observing the local db
+     * 2) if the fetch policy says so query the network
+     * 3) show the cache as loading, if the policy says so
      * 4) insert new data into local db
-     * 5) begin observing local db again to see the refreshed data from network
-     * @param dbSource
+     * 5) the local db source re-runs if the save changed anything, and shows the refreshed data
      */
-    private void fetchFromNetwork(final LiveData<CacheObject> dbSource){
+    private void fetchFromNetwork(){
 
         Log.d(TAG, "fetchFromNetwork: called.");
 
         // update LiveData for loading status
-        results.addSource(dbSource, new Observer<CacheObject>() {
-            @Override
-            public void onChanged(@Nullable CacheObject cacheObject) {
-                setValue(Resource.loading(cacheObject));
-            }
-        });
-
-        final LiveData<ApiResponse<RequestObject>> apiResponse = createCall();
+        state = State.FETCHING;
+        CacheObject cached = dbSource.getValue();
+        boolean showCache = fetchPolicy.strategy == FetchPolicy.Strategy.STALE_WHILE_REVALIDATE;
+        setValue(Resource.loading(showCache ? usable(cached) : null));
+
+        // shared with any other resource making the same request, see getRequestKey
+        apiResponse = RequestCoalescer.getInstance().execute(
+                getRequestKey(),
+                new RequestCoalescer.Request<RequestObject>() {
+                    @Override
+                    public LiveData<ApiResponse<RequestObject>> createCall() {
+                        return NetworkBoundResource.this.createCall();
+                    }
+
+                    @Override
+                    public CacheWriteResult saveCallResult(@NonNull RequestObject item, long fetchedAt) {
+                        // save the response to the local db
+                        return NetworkBoundResource.this.saveCallResult(item, fetchedAt);
+                    }
+                }
+        );
 
-        results.addSource(apiResponse, new Observer<ApiResponse<RequestObject>>() {
+        results.addSource(apiResponse, new Observer<RequestCoalescer.Result<RequestObject>>() {
             @Override
-            public void onChanged(@Nullable final ApiResponse<RequestObject> requestObjectApiResponse) {
-                results.removeSource(dbSource);
+            public void onChanged(@Nullable RequestCoalescer.Result<RequestObject> result) {
                 results.removeSource(apiResponse);
+                apiResponse = null;
+
+                final ApiResponse<RequestObject> requestObjectApiResponse = result.response;
 
                 /*
                     3 cases:
@@ -95,91 +192,130 @@ public abstract class NetworkBoundResource<CacheObject, RequestObject> {
                 if(requestObjectApiResponse instanceof ApiResponse.ApiSuccessResponse){
                     Log.d(TAG, "onChanged: ApiSuccessResponse.");
 
-                    appExecutors.diskIO().execute(new Runnable() {
-                        @Override
-                        public void run() {
-
-                            // save the response to the local db
-                            saveCallResult((RequestObject) processResponse((ApiResponse.ApiSuccessResponse)requestObjectApiResponse));
-
-                            appExecutors.mainThread().execute(new Runnable() {
-                                @Override
-                                public void run() {
-                                    results.addSource(loadFromDb(), new Observer<CacheObject>() {
-                                        @Override
-                                        public void onChanged(@Nullable CacheObject cacheObject) {
-                                            setValue(Resource.success(cacheObject));
-                                        }
-                                    });
-                                }
-                            });
-                        }
-                    });
+                    // already saved by the time it gets here
+                    if(result.writeResult.hasChanges() && !hasDbSourceRead(result.writeResult)){
+                        // dbSource re-runs for the rows the save changed, the refreshed data is shown once it's in
+                        state = State.AWAITING_SAVED_DATA;
+                        return;
+                    }
+                    // either the cache already held the response, or dbSource already re-ran for the save
+                    Log.d(TAG, "onChanged: showing what dbSource last read, " + result.writeResult);
+                    state = State.DONE;
+                    setValue(Resource.success(dbSource.getValue()));
                 }
                 else if(requestObjectApiResponse instanceof ApiResponse.ApiEmptyResponse){
                     Log.d(TAG, "onChanged: ApiEmptyResponse");
-                    appExecutors.mainThread().execute(new Runnable() {
-                        @Override
-                        public void run() {
-                            results.addSource(loadFromDb(), new Observer<CacheObject>() {
-                                @Override
-                                public void onChanged(@Nullable CacheObject cacheObject) {
-                                    setValue(Resource.success(cacheObject));
-                                }
-                            });
-                        }
-                    });
+                    // nothing was saved
+                    state = State.DONE;
+                    setValue(Resource.success(dbSource.getValue()));
                 }
                 else if(requestObjectApiResponse instanceof ApiResponse.ApiErrorResponse){
                     Log.d(TAG, "onChanged: ApiErrorResponse.");
-                    results.addSource(dbSource, new Observer<CacheObject>() {
-                        @Override
-                        public void onChanged(@Nullable CacheObject cacheObject) {
-                            setValue(
-                                    Resource.error(
-                                            ((ApiResponse.ApiErrorResponse) requestObjectApiResponse).getErrorMessage(),
-                                            cacheObject
-                                    )
-                            );
-                        }
-                    });
+                    fail(((ApiResponse.ApiErrorResponse) requestObjectApiResponse).getErrorMessage());
                 }
             }
         });
     }
 
-    private CacheObject processResponse(ApiResponse.ApiSuccessResponse response){
-        return (CacheObject) response.getBody();
+    // whether the value dbSource delivered last was read after the write was committed. Without a
+    // version to go by it's taken not to be, dbSource re-runs for every save that changes what it reads
+    private boolean hasDbSourceRead(CacheWriteResult writeResult){
+        return dbSource instanceof CacheVersioned
+                && writeResult.getVersion() > 0
+                && ((CacheVersioned) dbSource).getValueVersion() >= writeResult.getVersion();
+    }
+
+    private void fail(String message){
+        state = State.FAILED;
+        errorMessage = message;
+        setValue(Resource.error(message, usable(dbSource.getValue())));
+    }
+
+    /**
+     * Stops the resource at whatever it's doing: the api call is cancelled if it's in flight and its
+     * response not saved yet, unless other resources are waiting for the same request.
+     * Nothing is emitted afterwards.
+     */
+    @MainThread
+    public void cancel(){
+        if(isCancelled){
+            return;
+        }
+        isCancelled = true;
+        if(apiResponse != null){
+            Log.d(TAG, "cancel: cancelling the request in flight.");
+            results.removeSource(apiResponse);
+            RequestCoalescer.getInstance().cancel(apiResponse);
+            apiResponse = null;
+        }
     }
 
+    // dbSource re-runs for saves that didn't change its rows, and loading is shown over the same cache
+    // the success then shows, so equal resources are only emitted once (see Resource.equals)
     private void setValue(Resource<CacheObject> newValue){
-        if(results.getValue() != newValue){
-            results.setValue(newValue);
+        if(isCancelled){
+            return;
         }
+        Resource<CacheObject> value = results.getValue();
+        if(value == null ? newValue == null : value.equals(newValue)){
+            totalSuppressedCount++;
+            Log.d(TAG, "setValue: suppressed a duplicate " + newValue.status + ", " + totalSuppressedCount + " in total.");
+            return;
+        }
+        results.setValue(newValue);
     }
 
-    // Called to save the result of the API response into the database.
+    public static long getTotalSuppressedCount(){
+        return totalSuppressedCount;
+    }
+
+    // Called to save the result of the API response into the database, along with fetchedAt, when the
+    // server sent it in milliseconds (see getFetchedAt). It can be long ago if the response came from the http cache.
+    // Returns how many rows changed, if none the cached data is emitted again without re-reading it.
     @WorkerThread
-    protected abstract void saveCallResult(@NonNull RequestObject item);
+    protected abstract CacheWriteResult saveCallResult(@NonNull RequestObject item, long fetchedAt);
 
-    // Called with the data in the database to decide whether to fetch
-    // potentially updated data from the network.
+    // Called with the data in the database to get when it was fetched, in milliseconds, 0 if never.
+    // The fetch policy decides from its age whether to fetch it again and whether it can be shown,
+    // data never fetched is treated as not cached.
     @MainThread
-    protected abstract boolean shouldFetch(@Nullable CacheObject data);
+    protected abstract long getFetchedAt(@NonNull CacheObject data);
 
-    // Called to get the cached data from the database.
+    // Called to get the cached data from the database. Return the query's LiveData as it is (see CacheVersioned),
+    // to act on what it loads override onLoadedFromDb.
     @NonNull @MainThread
     protected abstract LiveData<CacheObject> loadFromDb();
 
+    // Called with every value the LiveData from loadFromDb delivers, before it's shown.
+    @MainThread
+    protected void onLoadedFromDb(@Nullable CacheObject data){
+    }
+
     // Called to create the API call.
     @NonNull @MainThread
     protected abstract LiveData<ApiResponse<RequestObject>> createCall();
 
+    // Identifies the request made by createCall, so resources making the same one while it's in flight
+    // share its response and save (see RequestCoalescer). Null to never share it.
+    @Nullable @MainThread
+    protected String getRequestKey(){
+        return null;
+    }
+
     // Returns a LiveData object that represents the resource that's implemented
     // in the base class.
+    // It can be cancelled through Cancellable by whoever gets it.
     public final LiveData<Resource<CacheObject>> getAsLiveData(){
         return results;
     };
+
+    private class ResultLiveData extends MediatorLiveData<Resource<CacheObject>> implements Cancellable {
+
+        @Override
+        public void cancel() {
+            NetworkBoundResource.this.cancel();
+        }
+    }
 }
 
 
@@ -0,0 +1,217 @@
+package com.codingwithmitch.foodrecipes.util;
+
+import android.arch.lifecycle.LiveData;
+import android.arch.lifecycle.MediatorLiveData;
+import android.arch.lifecycle.Observer;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+import com.codingwithmitch.foodrecipes.AppExecutors;
+import com.codingwithmitch.foodrecipes.requests.responses.ApiResponse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Shares one api call, and one save of its response, between every NetworkBoundResource asking for the
+ * same thing while it's in flight. Rotating the device or tapping a category twice joins the request
+ * that's already running instead of starting another.
+ *
+ * Requests are keyed by NetworkBoundResource.getRequestKey(). Everything here runs on the main thread
+ * except the save.
+ *
+ * Every execute has to be matched by a finish or a cancel. The request is only cancelled once all the
+ * resources sharing it have cancelled.
+ */
+public class RequestCoalescer {
+
+    private static final String TAG = "RequestCoalescer";
+
+    private static RequestCoalescer instance;
+
+    public static RequestCoalescer getInstance(){
+        if(instance == null){
+            AppExecutors appExecutors = AppExecutors.getInstance();
+            instance = new RequestCoalescer(appExecutors.diskIO(), appExecutors.mainThread());
+        }
+        return instance;
+    }
+
+    public interface Request<RequestObject> {
+
+        @MainThread
+        LiveData<ApiResponse<RequestObject>> createCall();
+
+        @WorkerThread
+        CacheWriteResult saveCallResult(@NonNull RequestObject item, long fetchedAt);
+    }
+
+    /**
+     * The response of a request. For a successful one it's only delivered once the response is saved.
+     * If the save fails the response is an ApiErrorResponse instead (see ApiResponse.saveFailed).
+     */
+    public static class Result<RequestObject> {
+
+        public final ApiResponse<RequestObject> response;
+
+        // null unless the response was an ApiSuccessResponse
+        @Nullable
+        public final CacheWriteResult writeResult;
+
+        Result(ApiResponse<RequestObject> response, @Nullable CacheWriteResult writeResult) {
+            this.response = response;
+            this.writeResult = writeResult;
+        }
+    }
+
+    private final Executor diskIO;
+    private final Executor mainThread;
+    private final Map<String, Execution<?>> inFlight = new HashMap<>();
+
+    @VisibleForTesting
+    RequestCoalescer(Executor diskIO, Executor mainThread) {
+        this.diskIO = diskIO;
+        this.mainThread = mainThread;
+    }
+
+    /**
+     * @param key identifies the request, null to never share it
+     * @param request only used if no request with this key is in flight
+     */
+    @MainThread
+    @SuppressWarnings("unchecked")
+    public <RequestObject> LiveData<Result<RequestObject>> execute(@Nullable final String key,
+                                                                   final Request<RequestObject> request){
+        if(key != null){
+            Execution<RequestObject> running = (Execution<RequestObject>) inFlight.get(key);
+            if(running != null){
+                Log.d(TAG, "execute: joining the request in flight for " + key);
+                running.subscribers++;
+                return running;
+            }
+        }
+
+        final Execution<RequestObject> execution = new Execution<>(key, request.createCall());
+        execution.addSource(execution.apiResponse, new Observer<ApiResponse<RequestObject>>() {
+            @Override
+            public void onChanged(@Nullable final ApiResponse<RequestObject> response) {
+                execution.removeSource(execution.apiResponse);
+
+                if(response instanceof ApiResponse.ApiSuccessResponse){
+                    final RequestObject body = (RequestObject) ((ApiResponse.ApiSuccessResponse) response).getBody();
+                    final long fetchedAt = ((ApiResponse.ApiSuccessResponse) response).getReceivedAt();
+                    diskIO.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            if(execution.isCancelled){
+                                Log.d(TAG, "execute: cancelled before saving " + execution.key);
+                                close(body);
+                                return;
+                            }
+                            // a cancel during the save fails reading the body, and the save is rolled back
+                            CacheWriteResult writeResult = null;
+                            RuntimeException failure = null;
+                            try {
+                                writeResult = request.saveCallResult(body, fetchedAt);
+                            } catch (RuntimeException e) {
+                                Log.e(TAG, "execute: failed to save the response for " + execution.key, e);
+                                failure = e;
+                            } finally {
+                                close(body);
+                                // finished whatever happened, or the key would stay in flight with nobody to finish it
+                                final Result<RequestObject> result = writeResult != null
+                                        ? new Result<>(response, writeResult)
+                                        : new Result<>(ApiResponse.<RequestObject>saveFailed(failure), null);
+                                mainThread.execute(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        finish(execution, result);
+                                    }
+                                });
+                            }
+                        }
+                    });
+                }
+                else{
+                    finish(execution, new Result<>(response, null));
+                }
+            }
+        });
+
+        if(key != null){
+            inFlight.put(key, execution);
+        }
+        return execution;
+    }
+
+    /**
+     * Called by a resource that doesn't want the result of execute anymore.
+     * Once nobody does the call is cancelled, or the save if the response is already in.
+     */
+    @MainThread
+    public void cancel(LiveData<? extends Result<?>> result){
+        Execution<?> execution = (Execution<?>) result;
+        if(execution.isCancelled || execution.isFinished || --execution.subscribers > 0){
+            return;
+        }
+        Log.d(TAG, "cancel: nobody is waiting for " + execution.key + " anymore, cancelling it.");
+        execution.isCancelled = true;
+        removeInFlight(execution);
+        if(execution.apiResponse instanceof Cancellable){
+            ((Cancellable) execution.apiResponse).cancel();
+        }
+    }
+
+    // requests made from now on start a new call
+    private <RequestObject> void finish(Execution<RequestObject> execution, Result<RequestObject> result){
+        if(execution.isCancelled){
+            return;
+        }
+        execution.isFinished = true;
+        removeInFlight(execution);
+        execution.setValue(result);
+    }
+
+    private void removeInFlight(Execution<?> execution){
+        if(execution.key != null && inFlight.get(execution.key) == execution){
+            inFlight.remove(execution.key);
+        }
+    }
+
+    // the body of a response that won't be saved can still hold the connection, see RecipeStream
+    private static void close(Object body){
+        if(body instanceof Closeable){
+            try {
+                ((Closeable) body).close();
+            } catch (IOException e) {
+                // only releasing it
+            }
+        }
+    }
+
+    private static class Execution<RequestObject> extends MediatorLiveData<Result<RequestObject>> {
+
+        @Nullable
+        final String key;
+        final LiveData<ApiResponse<RequestObject>> apiResponse;
+
+        // main thread only
+        int subscribers = 1;
+        boolean isFinished;
+
+        // also read by the save
+        volatile boolean isCancelled;
+
+        Execution(@Nullable String key, LiveData<ApiResponse<RequestObject>> apiResponse) {
+            this.key = key;
+            this.apiResponse = apiResponse;
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.codingwithmitch.foodrecipes.util;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import java.util.Objects;
+
 public class Resource<T> {
 
     @NonNull
@@ -32,5 +34,28 @@ public class Resource<T> {
         return new Resource<>(Status.LOADING, data, null);
     }
 
+    /**
+     * Equal if the status, message and data are, so the same data emitted again can be skipped.
+     * Lists of rows are compared row by row, see RecipeSummary.equals.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if(this == o){
+            return true;
+        }
+        if(o == null || getClass() != o.getClass()){
+            return false;
+        }
+        Resource<?> resource = (Resource<?>) o;
+        return status == resource.status
+                && Objects.equals(message, resource.message)
+                && Objects.equals(data, resource.data);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(status, data, message);
+    }
+
     public enum Status { SUCCESS, ERROR, LOADING}
 }
\ No newline at end of file
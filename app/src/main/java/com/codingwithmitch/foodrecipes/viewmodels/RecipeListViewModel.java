@@ -12,12 +12,16 @@ import android.support.annotation.Nullable;
 import android.util.Log;
 
 
-import com.codingwithmitch.foodrecipes.models.Recipe;
+import com.codingwithmitch.foodrecipes.models.RecipeSummary;
+import com.codingwithmitch.foodrecipes.persistence.RecipeDao;
 import com.codingwithmitch.foodrecipes.repositories.RecipeRepository;
 import com.codingwithmitch.foodrecipes.requests.responses.RecipeSearchResponse;
+import com.codingwithmitch.foodrecipes.util.Cancellable;
+import com.codingwithmitch.foodrecipes.util.FrameCoalescingLiveData;
 import com.codingwithmitch.foodrecipes.util.NetworkBoundResource;
 import com.codingwithmitch.foodrecipes.util.Resource;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class RecipeListViewModel extends AndroidViewModel {
@@ -28,17 +32,25 @@ public class RecipeListViewModel extends AndroidViewModel {
     public enum ViewState {CATEGORIES, RECIPES}
 
     private MutableLiveData<ViewState> viewState;
-    private MediatorLiveData<Resource<List<Recipe>>> recipes = new MediatorLiveData<>();
+    private MediatorLiveData<Resource<List<RecipeSummary>>> recipes = new MediatorLiveData<>();
+
+    // what the activity sees, at most once a frame
+    private LiveData<Resource<List<RecipeSummary>>> coalescedRecipes = new FrameCoalescingLiveData<>(recipes);
     private RecipeRepository recipeRepository;
 
+    // every page loaded so far for the current query
+    private List<RecipeSummary> loadedRecipes = new ArrayList<>();
+
     // query extras
     private boolean isQueryExhausted;
     private boolean isPerformingQuery;
     private int pageNumber;
     private String query;
-    private boolean cancelRequest;
     private long requestStartTime;
 
+    // the page being loaded
+    private LiveData<Resource<List<RecipeSummary>>> searchSource;
+
     public RecipeListViewModel(@NonNull Application application) {
         super(application);
         recipeRepository = RecipeRepository.getInstance(application);
@@ -56,8 +68,8 @@ public class RecipeListViewModel extends AndroidViewModel {
         return viewState;
     }
 
-    public LiveData<Resource<List<Recipe>>> getRecipes(){
-        return recipes;
+    public LiveData<Resource<List<RecipeSummary>>> getRecipes(){
+        return coalescedRecipes;
     }
 
     public int getPageNumber(){
@@ -89,49 +101,66 @@ public class RecipeListViewModel extends AndroidViewModel {
 
     private void executeSearch(){
         requestStartTime = System.currentTimeMillis();
-        cancelRequest = false;
         isPerformingQuery = true;
         viewState.setValue(ViewState.RECIPES);
-        final LiveData<Resource<List<Recipe>>> repositorySource = recipeRepository.searchRecipesApi(query, pageNumber);
-        recipes.addSource(repositorySource, new Observer<Resource<List<Recipe>>>() {
+        if(pageNumber == 1){
+            loadedRecipes = new ArrayList<>();
+        }
+
+        // the repository only returns the new page, so it's appended to the pages already loaded.
+        // If a save added rows above the last one shown it returns every row from the start instead
+        final List<RecipeSummary> previousPages = loadedRecipes;
+        final RecipeSummary lastRecipe = previousPages.isEmpty() ? null : previousPages.get(previousPages.size() - 1);
+        final LiveData<Resource<List<RecipeSummary>>> repositorySource =
+                recipeRepository.searchRecipesApi(query, pageNumber, lastRecipe, previousPages.size());
+        searchSource = repositorySource;
+        recipes.addSource(repositorySource, new Observer<Resource<List<RecipeSummary>>>() {
             @Override
-            public void onChanged(@Nullable Resource<List<Recipe>> listResource) {
-                if(!cancelRequest){
-                    if(listResource != null){
-                        if(listResource.status == Resource.Status.SUCCESS){
-                            Log.d(TAG, "onChanged: REQUEST TIME: " + (System.currentTimeMillis() - requestStartTime) / 1000 + " seconds.");
-                            Log.d(TAG, "onChanged: page number: " + pageNumber);
-                            Log.d(TAG, "onChanged: " + listResource.data);
-
-                            isPerformingQuery = false;
-                            if(listResource.data != null){
-                                if(listResource.data.size() == 0 ){
-                                    Log.d(TAG, "onChanged: query is exhausted...");
-                                    recipes.setValue(
-                                            new Resource<List<Recipe>>(
-                                                    Resource.Status.ERROR,
-                                                    listResource.data,
-                                                    QUERY_EXHAUSTED
-                                            )
-                                    );
-                                    isQueryExhausted = true;
-                                }
-                            }
-                            recipes.removeSource(repositorySource);
+            public void onChanged(@Nullable Resource<List<RecipeSummary>> listResource) {
+                if(listResource != null){
+                    List<RecipeSummary> allPages;
+                    if(listResource.data != null && RecipeDao.isFromStart(listResource.data, lastRecipe)){
+                        allPages = new ArrayList<>(listResource.data);
+                    }
+                    else{
+                        allPages = new ArrayList<>(previousPages);
+                        if(listResource.data != null){
+                            allPages.addAll(listResource.data);
                         }
-                        else if(listResource.status == Resource.Status.ERROR){
-                            Log.d(TAG, "onChanged: REQUEST TIME: " + (System.currentTimeMillis() - requestStartTime) / 1000 + " seconds.");
-                            isPerformingQuery = false;
-                            if(listResource.message.equals(QUERY_EXHAUSTED)){
+                    }
+
+                    if(listResource.status == Resource.Status.SUCCESS){
+                        Log.d(TAG, "onChanged: REQUEST TIME: " + (System.currentTimeMillis() - requestStartTime) / 1000 + " seconds.");
+                        Log.d(TAG, "onChanged: page number: " + pageNumber);
+                        Log.d(TAG, "onChanged: " + listResource.data);
+
+                        isPerformingQuery = false;
+                        if(listResource.data != null){
+                            if(listResource.data.size() == 0 ){
+                                Log.d(TAG, "onChanged: query is exhausted...");
+                                recipes.setValue(
+                                        new Resource<List<RecipeSummary>>(
+                                                Resource.Status.ERROR,
+                                                allPages,
+                                                QUERY_EXHAUSTED
+                                        )
+                                );
                                 isQueryExhausted = true;
                             }
-                            recipes.removeSource(repositorySource);
                         }
-                        recipes.setValue(listResource);
+                        loadedRecipes = allPages;
+                        recipes.removeSource(repositorySource);
                     }
-                    else{
+                    else if(listResource.status == Resource.Status.ERROR){
+                        Log.d(TAG, "onChanged: REQUEST TIME: " + (System.currentTimeMillis() - requestStartTime) / 1000 + " seconds.");
+                        isPerformingQuery = false;
+                        if(listResource.message.equals(QUERY_EXHAUSTED)){
+                            isQueryExhausted = true;
+                        }
+                        loadedRecipes = allPages;
                         recipes.removeSource(repositorySource);
                     }
+                    recipes.setValue(new Resource<>(listResource.status, allPages, listResource.message));
                 }
                 else{
                     recipes.removeSource(repositorySource);
@@ -143,11 +172,28 @@ public class RecipeListViewModel extends AndroidViewModel {
     public void cancelSearchRequest(){
         if(isPerformingQuery){
             Log.d(TAG, "cancelSearchRequest: canceling the search request.");
-            cancelRequest = true;
+            cancelSearchSource();
             isPerformingQuery = false;
             pageNumber = 1;
         }
     }
+
+    // stops the api call or the save of its response, whichever it's at
+    private void cancelSearchSource(){
+        if(searchSource != null){
+            recipes.removeSource(searchSource);
+            if(searchSource instanceof Cancellable){
+                ((Cancellable) searchSource).cancel();
+            }
+            searchSource = null;
+        }
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        cancelSearchSource();
+    }
 }
 
 
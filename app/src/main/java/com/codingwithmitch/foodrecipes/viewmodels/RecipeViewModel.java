@@ -8,6 +8,7 @@ import android.support.annotation.NonNull;
 
 import com.codingwithmitch.foodrecipes.models.Recipe;
 import com.codingwithmitch.foodrecipes.repositories.RecipeRepository;
+import com.codingwithmitch.foodrecipes.util.FrameCoalescingLiveData;
 import com.codingwithmitch.foodrecipes.util.Resource;
 
 
@@ -21,7 +22,8 @@ public class RecipeViewModel extends AndroidViewModel {
     }
 
     public LiveData<Resource<Recipe>> searchRecipeApi(String recipeId){
-        return recipeRepository.searchRecipesApi(recipeId);
+        // the cached recipe and the refreshed one often come within a frame of each other
+        return new FrameCoalescingLiveData<>(recipeRepository.searchRecipesApi(recipeId));
     }
 }
 
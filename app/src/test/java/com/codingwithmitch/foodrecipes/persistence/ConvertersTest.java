@@ -0,0 +1,36 @@
+package com.codingwithmitch.foodrecipes.persistence;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Converters reads what it writes, and what the Gson it used to build for every value wrote.
+ * ConvertersBenchmark times the two.
+ */
+public class ConvertersTest {
+
+    @Test
+    public void readsWhatItWrites(){
+        String[] ingredients = {"2 cups flour", "1/2 tsp \"kosher\" salt", null, "1 egg, beaten\n", ""};
+        assertArrayEquals(ingredients, Converters.fromString(Converters.fromArrayList(ingredients)));
+        assertNull(Converters.fromString(null));
+        assertNull(Converters.fromArrayList(null));
+        assertNull(Converters.fromString("not json"));
+    }
+
+    @Test
+    public void readsRowsWrittenByTheOldConverter(){
+        String[] ingredients = {"1 lb chicken", "salt & pepper", "\u00bd cup cr\u00e8me fra\u00eeche"};
+        assertArrayEquals(ingredients, Converters.fromString(oldFromArrayList(ingredients)));
+    }
+
+    // what Converters did before
+    private static String oldFromArrayList(String[] list){
+        Gson gson = new Gson();
+        return gson.toJson(list);
+    }
+}
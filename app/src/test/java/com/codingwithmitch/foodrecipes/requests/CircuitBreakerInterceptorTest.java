@@ -0,0 +1,235 @@
+package com.codingwithmitch.foodrecipes.requests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Random;
+
+import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * RetryInterceptor and CircuitBreakerInterceptor against a MockWebServer that fails on demand, with the
+ * same http cache and interceptor order as ServiceGenerator.
+ */
+public class CircuitBreakerInterceptorTest {
+
+    private static final int FAILURE_THRESHOLD = 2;
+    private static final long OPEN_MILLIS = 30 * 1000;
+    private static final int MAX_RETRIES = 2;
+
+    @Rule
+    public TemporaryFolder cacheDirectory = new TemporaryFolder();
+
+    private MockWebServer server;
+    private FakeClock clock;
+    private CircuitBreakerInterceptor circuitBreaker;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        clock = new FakeClock();
+        circuitBreaker = new CircuitBreakerInterceptor(FAILURE_THRESHOLD, OPEN_MILLIS, clock);
+        client = new OkHttpClient.Builder()
+                .retryOnConnectionFailure(false)
+                .cache(new Cache(cacheDirectory.getRoot(), 1024 * 1024))
+                .addNetworkInterceptor(new CacheControlInterceptor(60 * 60))
+                .addInterceptor(circuitBreaker)
+                .addInterceptor(new RetryInterceptor(MAX_RETRIES, 100, 1000, new RetryInterceptor.Sleeper() {
+                    @Override
+                    public void sleep(long millis) {
+                        // no need to wait for a mock server
+                    }
+                }, new Random(0)))
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void retriesServerErrors() throws IOException {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("recipe"));
+
+        Response response = get("/api/get?rId=1");
+        assertEquals(200, response.code());
+        assertEquals("recipe", response.body().string());
+        assertEquals(3, server.getRequestCount());
+        assertEquals(CircuitBreakerInterceptor.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void retriesDroppedConnections() throws IOException {
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+        server.enqueue(new MockResponse().setBody("recipe"));
+
+        assertEquals("recipe", get("/api/get?rId=1").body().string());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void opensAfterConsecutiveFailures() throws IOException {
+        failRequests(FAILURE_THRESHOLD);
+        assertEquals(CircuitBreakerInterceptor.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void answersFromTheCacheWhileOpen() throws IOException {
+        server.enqueue(new MockResponse().setBody("cached recipe"));
+        Response cached = get("/api/get?rId=1");
+        assertEquals("cached recipe", cached.body().string());
+
+        failRequests(FAILURE_THRESHOLD);
+        int requestCount = server.getRequestCount();
+
+        Response response = get("/api/get?rId=1");
+        assertEquals(200, response.code());
+        assertEquals("cached recipe", response.body().string());
+        // the server isn't called, and the response keeps the time it was first received
+        assertEquals(requestCount, server.getRequestCount());
+        assertNull(response.networkResponse());
+        assertEquals(cached.receivedResponseAtMillis(), response.receivedResponseAtMillis());
+    }
+
+    @Test
+    public void failsWith504WhenNothingIsCached() throws IOException {
+        failRequests(FAILURE_THRESHOLD);
+        int requestCount = server.getRequestCount();
+
+        assertEquals(504, get("/api/get?rId=2").code());
+        assertEquals(requestCount, server.getRequestCount());
+    }
+
+    @Test
+    public void closesAfterASuccessfulTrialRequest() throws IOException {
+        failRequests(FAILURE_THRESHOLD);
+        clock.now += OPEN_MILLIS;
+
+        server.enqueue(new MockResponse().setBody("recipe"));
+        assertEquals("recipe", get("/api/get?rId=1").body().string());
+        assertEquals(CircuitBreakerInterceptor.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void reopensAfterAFailedTrialRequest() throws IOException {
+        failRequests(FAILURE_THRESHOLD);
+        clock.now += OPEN_MILLIS;
+
+        failRequests(1);
+        assertEquals(CircuitBreakerInterceptor.State.OPEN, circuitBreaker.getState());
+
+        // open for another OPEN_MILLIS from the failed trial
+        clock.now += OPEN_MILLIS - 1;
+        int requestCount = server.getRequestCount();
+        assertEquals(504, get("/api/get?rId=2").code());
+        assertEquals(requestCount, server.getRequestCount());
+    }
+
+    @Test
+    public void ignoresCancelledCalls() throws IOException {
+        OkHttpClient.Builder builder = client.newBuilder();
+        // cancelled before it gets to the circuit breaker, as RequestScheduler does to a preempted call
+        builder.interceptors().add(0, new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                chain.call().cancel();
+                return chain.proceed(chain.request());
+            }
+        });
+        OkHttpClient cancelling = builder.build();
+
+        for(int i = 0; i < FAILURE_THRESHOLD; i++){
+            try {
+                cancelling.newCall(new Request.Builder().url(server.url("/api/search?q=chicken&page=2")).build()).execute();
+                fail("expected the call to be cancelled");
+            } catch (IOException e) {
+                // cancelled
+            }
+        }
+        assertEquals(CircuitBreakerInterceptor.State.CLOSED, circuitBreaker.getState());
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    public void stopsBackingOffOnceCancelled() throws IOException {
+        final Call[] call = new Call[1];
+        final long[] slept = new long[1];
+        OkHttpClient cancelledWhileWaiting = client.newBuilder()
+                .addInterceptor(new RetryInterceptor(MAX_RETRIES, 1000, 1000, new RetryInterceptor.Sleeper() {
+                    @Override
+                    public void sleep(long millis) {
+                        slept[0] += millis;
+                        call[0].cancel();
+                    }
+                }, new Random(0)))
+                .build();
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("recipe"));
+
+        call[0] = cancelledWhileWaiting.newCall(new Request.Builder().url(server.url("/api/get?rId=1")).build());
+        try {
+            call[0].execute();
+            fail("expected the call to be cancelled");
+        } catch (IOException e) {
+            // cancelled
+        }
+        assertEquals(1, server.getRequestCount());
+        // the backoff of up to a second stopped at the first check after the cancel
+        assertTrue("slept " + slept[0] + "ms", slept[0] <= 100);
+    }
+
+    // requests that fail every retry with a 500
+    private void failRequests(int count) throws IOException {
+        for(int i = 0; i < count; i++){
+            for(int attempt = 0; attempt <= MAX_RETRIES; attempt++){
+                server.enqueue(new MockResponse().setResponseCode(500));
+            }
+            Response response = get("/api/search?q=fail" + i);
+            if(response.code() != 500){
+                fail("expected a 500, got " + response.code());
+            }
+            response.close();
+        }
+    }
+
+    // with the header RecipeApi sends
+    private Response get(String path) throws IOException {
+        Request request = new Request.Builder()
+                .url(server.url(path))
+                .header("Cache-Control", "max-age=0")
+                .build();
+        return client.newCall(request).execute();
+    }
+
+    private static class FakeClock implements CircuitBreakerInterceptor.Clock {
+
+        long now = 1000;
+
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.codingwithmitch.foodrecipes.requests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * HttpCacheStats as an application interceptor in front of an OkHttp cache, against a MockWebServer.
+ */
+public class HttpCacheStatsTest {
+
+    @Rule
+    public TemporaryFolder cacheDir = new TemporaryFolder();
+
+    private MockWebServer server;
+    private HttpCacheStats cacheStats;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        cacheStats = new HttpCacheStats();
+        client = new OkHttpClient.Builder()
+                .cache(new Cache(cacheDir.getRoot(), 1024 * 1024))
+                .addInterceptor(cacheStats)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void countsHitsAndMisses() throws IOException {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=60").setBody("recipe"));
+        HttpUrl url = server.url("/api/get?rId=1");
+
+        execute(new Request.Builder().url(url).build());
+        execute(new Request.Builder().url(url).build());
+
+        assertEquals(1, cacheStats.getMissCount());
+        assertEquals(1, cacheStats.getHitCount());
+        assertEquals(0, cacheStats.getUnsatisfiableCount());
+    }
+
+    @Test
+    public void doesNotCountAForcedCacheRequestWithNothingCachedAsAMiss() throws IOException {
+        Request request = new Request.Builder()
+                .url(server.url("/api/get?rId=1"))
+                .cacheControl(CacheControl.FORCE_CACHE)
+                .build();
+
+        assertEquals(504, execute(request));
+
+        assertEquals(0, server.getRequestCount());
+        assertEquals(0, cacheStats.getMissCount());
+        assertEquals(1, cacheStats.getUnsatisfiableCount());
+    }
+
+    private int execute(Request request) throws IOException {
+        Response response = client.newCall(request).execute();
+        try {
+            response.body().string();
+            return response.code();
+        } finally {
+            response.close();
+        }
+    }
+}
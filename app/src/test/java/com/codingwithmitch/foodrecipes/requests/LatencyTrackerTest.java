@@ -0,0 +1,95 @@
+package com.codingwithmitch.foodrecipes.requests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * LatencyTracker behind RetryInterceptor, as in ServiceGenerator, against a MockWebServer.
+ */
+public class LatencyTrackerTest {
+
+    private static final int READ_TIMEOUT_MILLIS = 200;
+
+    private MockWebServer server;
+    private LatencyTracker latencyTracker;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        // two samples before there's a percentile
+        latencyTracker = new LatencyTracker(10, 2);
+        client = new OkHttpClient.Builder()
+                .retryOnConnectionFailure(false)
+                .readTimeout(READ_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .addInterceptor(new RetryInterceptor(1, 0, 0, new RetryInterceptor.Sleeper() {
+                    @Override
+                    public void sleep(long millis) {
+                    }
+                }, new Random(0)))
+                .eventListenerFactory(latencyTracker)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void recordsAnAttemptThatTimedOut() throws IOException {
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+        server.enqueue(new MockResponse().setBody("recipe"));
+
+        HttpUrl url = server.url("/api/get?rId=1");
+        assertEquals("recipe", client.newCall(new Request.Builder().url(url).build()).execute().body().string());
+
+        // the retry that succeeded and the attempt before it, as long as the timeout
+        assertTrue(latencyTracker.getResponseLatency(url, 1.0) >= READ_TIMEOUT_MILLIS);
+        assertTrue(latencyTracker.getResponseLatency(url, 0.5) < READ_TIMEOUT_MILLIS);
+    }
+
+    @Test
+    public void ignoresCancelledCalls() throws IOException {
+        HttpUrl url = server.url("/api/get?rId=1");
+        for(int i = 0; i < 2; i++){
+            server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+            final okhttp3.Call call = client.newCall(new Request.Builder().url(url).build());
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(READ_TIMEOUT_MILLIS / 4);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    call.cancel();
+                }
+            }).start();
+            try {
+                call.execute();
+                fail("expected the call to be cancelled");
+            } catch (IOException e) {
+                // cancelled
+            }
+        }
+        assertEquals(-1, latencyTracker.getResponseLatency(url, 0.5));
+    }
+}
@@ -0,0 +1,108 @@
+package com.codingwithmitch.foodrecipes.requests.responses;
+
+import com.codingwithmitch.foodrecipes.models.Recipe;
+import com.codingwithmitch.foodrecipes.util.JsonAdapters;
+import com.google.gson.JsonIOException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * RecipeStream.readAhead, with a parsing thread that ends every way it can.
+ */
+public class RecipeStreamTest {
+
+    private static final String RECIPES = "[{\"recipe_id\": \"r1\", \"title\": \"Chicken soup\"}, " +
+            "{\"recipe_id\": \"r2\", \"title\": \"Chicken pie\"}]";
+
+    private static final Executor NEW_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            new Thread(command).start();
+        }
+    };
+
+    @Test
+    public void readsAhead() throws IOException {
+        RecipeStream recipes = stream(JsonAdapters.getGson().getAdapter(Recipe.class)).readAhead(NEW_THREAD, 1, 1000);
+        assertEquals("r1", recipes.next().getRecipe_id());
+        assertEquals("r2", recipes.next().getRecipe_id());
+        assertNull(recipes.next());
+    }
+
+    @Test
+    public void failsWhenTheParsingThreadDies() throws IOException {
+        final TypeAdapter<Recipe> adapter = JsonAdapters.getGson().getAdapter(Recipe.class);
+        RecipeStream recipes = stream(new TypeAdapter<Recipe>() {
+            private int count;
+
+            @Override
+            public void write(JsonWriter out, Recipe value) throws IOException {
+                adapter.write(out, value);
+            }
+
+            @Override
+            public Recipe read(JsonReader in) throws IOException {
+                if(count++ > 0){
+                    throw new OutOfMemoryError("second recipe");
+                }
+                return adapter.read(in);
+            }
+        }).readAhead(NEW_THREAD, 1, 10 * 1000);
+
+        assertEquals("r1", recipes.next().getRecipe_id());
+        try {
+            recipes.next();
+            fail("expected the stream to fail");
+        } catch (JsonIOException e) {
+            // not left waiting for the rest
+        }
+    }
+
+    @Test
+    public void timesOutWhenNothingParses() throws IOException {
+        RecipeStream recipes = stream(JsonAdapters.getGson().getAdapter(Recipe.class)).readAhead(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                // queued behind other work, never runs
+            }
+        }, 1, 200);
+        try {
+            recipes.next();
+            fail("expected the stream to time out");
+        } catch (JsonIOException e) {
+            // gave up waiting
+        }
+    }
+
+    @Test
+    public void readsInPlaceWhenTheExecutorRejects() throws IOException {
+        RecipeStream stream = stream(JsonAdapters.getGson().getAdapter(Recipe.class));
+        RecipeStream recipes = stream.readAhead(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        }, 1, 1000);
+        assertSame(stream, recipes);
+        assertEquals("r1", recipes.next().getRecipe_id());
+    }
+
+    private static RecipeStream stream(TypeAdapter<Recipe> adapter) throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(RECIPES));
+        reader.beginArray();
+        return new RecipeStream(reader, adapter);
+    }
+}
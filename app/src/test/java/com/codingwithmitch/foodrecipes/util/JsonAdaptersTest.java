@@ -0,0 +1,55 @@
+package com.codingwithmitch.foodrecipes.util;
+
+import com.codingwithmitch.foodrecipes.models.Recipe;
+import com.codingwithmitch.foodrecipes.requests.responses.RecipeResponse;
+import com.codingwithmitch.foodrecipes.requests.responses.RecipeSearchResponse;
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The shared Gson of JsonAdapters parses a search and a detail payload shaped like the api's responses
+ * (src/test/resources), with the fields the app doesn't use, the same as a reflective Gson.
+ * JsonAdaptersBenchmark times the two.
+ */
+public class JsonAdaptersTest {
+
+    private final Gson reflective = new Gson();
+    private final Gson adapters = JsonAdapters.getGson();
+
+    @Test
+    public void parsesLikeReflection() throws IOException {
+        RecipeSearchResponse expected = reflective.fromJson(read("search_response.json"), RecipeSearchResponse.class);
+        RecipeSearchResponse actual = adapters.fromJson(read("search_response.json"), RecipeSearchResponse.class);
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(expected.getRecipes(), actual.getRecipes());
+        assertEquals(30, actual.getRecipes().size());
+
+        Recipe expectedRecipe = reflective.fromJson(read("get_response.json"), RecipeResponse.class).getRecipe();
+        Recipe actualRecipe = adapters.fromJson(read("get_response.json"), RecipeResponse.class).getRecipe();
+        assertEquals(expectedRecipe, actualRecipe);
+        assertArrayEquals(expectedRecipe.getIngredients(), actualRecipe.getIngredients());
+    }
+
+    private String read(String resource) throws IOException {
+        InputStream in = getClass().getClassLoader().getResourceAsStream(resource);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while((read = in.read(buffer)) != -1){
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.codingwithmitch.foodrecipes.util;
+
+import android.arch.core.executor.ArchTaskExecutor;
+import android.arch.core.executor.TaskExecutor;
+import android.arch.lifecycle.LiveData;
+import android.arch.lifecycle.MutableLiveData;
+import android.arch.lifecycle.Observer;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.codingwithmitch.foodrecipes.requests.responses.ApiResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Executor;
+
+import retrofit2.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * RequestCoalescer with the save and the main thread run in place, and LiveData told every thread is the main one.
+ */
+public class RequestCoalescerTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
+    private RequestCoalescer coalescer;
+
+    @Before
+    public void setUp(){
+        ArchTaskExecutor.getInstance().setDelegate(new TaskExecutor() {
+            @Override
+            public void executeOnDiskIO(@NonNull Runnable runnable) {
+                runnable.run();
+            }
+
+            @Override
+            public void postToMainThread(@NonNull Runnable runnable) {
+                runnable.run();
+            }
+
+            @Override
+            public boolean isMainThread() {
+                return true;
+            }
+        });
+        coalescer = new RequestCoalescer(DIRECT, DIRECT);
+    }
+
+    @After
+    public void tearDown(){
+        ArchTaskExecutor.getInstance().setDelegate(null);
+    }
+
+    @Test
+    public void failedSaveIsAnError(){
+        FakeRequest request = new FakeRequest(new IllegalStateException("disk full"));
+
+        RequestCoalescer.Result<String> result = observe(coalescer.execute("api/search?q=chicken&page=1", request));
+
+        assertNotNull(result);
+        assertTrue(result.response instanceof ApiResponse.ApiErrorResponse);
+        assertTrue(((ApiResponse.ApiErrorResponse) result.response).getErrorMessage().contains("disk full"));
+        assertNull(result.writeResult);
+    }
+
+    @Test
+    public void failedSaveDoesNotStayInFlight(){
+        FakeRequest failing = new FakeRequest(new IllegalStateException("disk full"));
+        observe(coalescer.execute("api/search?q=chicken&page=1", failing));
+
+        FakeRequest next = new FakeRequest(null);
+        RequestCoalescer.Result<String> result = observe(coalescer.execute("api/search?q=chicken&page=1", next));
+
+        // a call of its own, not the one that failed
+        assertEquals(1, next.callCount);
+        assertNotNull(result);
+        assertTrue(result.response instanceof ApiResponse.ApiSuccessResponse);
+        assertEquals(1, result.writeResult.getChanged());
+    }
+
+    private static <T> T observe(LiveData<T> liveData){
+        final Object[] value = new Object[1];
+        Observer<T> observer = new Observer<T>() {
+            @Override
+            public void onChanged(@Nullable T t) {
+                value[0] = t;
+            }
+        };
+        liveData.observeForever(observer);
+        liveData.removeObserver(observer);
+        @SuppressWarnings("unchecked")
+        T t = (T) value[0];
+        return t;
+    }
+
+    // answers at once, and its save throws saveFailure if there is one
+    private static class FakeRequest implements RequestCoalescer.Request<String> {
+
+        private final RuntimeException saveFailure;
+        int callCount;
+
+        FakeRequest(@Nullable RuntimeException saveFailure) {
+            this.saveFailure = saveFailure;
+        }
+
+        @Override
+        public LiveData<ApiResponse<String>> createCall() {
+            callCount++;
+            MutableLiveData<ApiResponse<String>> response = new MutableLiveData<>();
+            response.setValue(new ApiResponse<String>().create(Response.success("recipes")));
+            return response;
+        }
+
+        @Override
+        public CacheWriteResult saveCallResult(@NonNull String item, long fetchedAt) {
+            if(saveFailure != null){
+                throw saveFailure;
+            }
+            return new CacheWriteResult(1, 0);
+        }
+    }
+}